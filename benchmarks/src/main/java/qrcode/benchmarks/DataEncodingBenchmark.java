@@ -0,0 +1,55 @@
+package qrcode.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import qrcode.DataEncoding;
+import qrcode.EncoderContext;
+import qrcode.QRCodeInfos.CorrectionLvl;
+import qrcode.QRMatrix;
+
+/**
+ * From the input string to the bits of the data and error correction
+ * codewords, and the reusable end to end path for comparison
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DataEncodingBenchmark {
+
+	private EncoderContext context;
+
+	@Setup(Level.Trial)
+	public void setUp(Payloads payloads) {
+		context = new EncoderContext(payloads.version, CorrectionLvl.L);
+	}
+
+	@Benchmark
+	public boolean[] byteModeEncoding(Payloads payloads) {
+		return DataEncoding.byteModeEncoding(payloads.payload, payloads.version);
+	}
+
+	@Benchmark
+	public boolean[] mixedModeEncoding(Payloads payloads) {
+		return DataEncoding.mixedModeEncoding(payloads.payload, payloads.version, CorrectionLvl.L);
+	}
+
+	@Benchmark
+	public QRMatrix encoderContext(Payloads payloads) {
+		return context.encodeByteMode(payloads.payload);
+	}
+}
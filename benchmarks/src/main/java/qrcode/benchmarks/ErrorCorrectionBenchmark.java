@@ -0,0 +1,80 @@
+package qrcode.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import qrcode.DataEncoding;
+import qrcode.QRCodeInfos;
+import reedsolomon.ErrorCorrectionDecoding;
+import reedsolomon.ErrorCorrectionEncoding;
+
+/**
+ * Reed-Solomon encoding of the data codewords of a version, in a single block,
+ * and decoding of that block clean and with as many errors as it can correct
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ErrorCorrectionBenchmark {
+
+	private int[] codewords;
+	private int eccLength;
+	private int[] output;
+	private int[] block;
+	private int[] damaged;
+	private int[] work;
+
+	@Setup(Level.Trial)
+	public void setUp(Payloads payloads) {
+		int version = payloads.version;
+		int[] encoded = DataEncoding.encodeString(payloads.payload, QRCodeInfos.getMaxInputLength(version));
+		codewords = DataEncoding.fillSequence(DataEncoding.addInformations(encoded, version),
+				QRCodeInfos.getCodeWordsLength(version));
+		eccLength = QRCodeInfos.getECCLength(version);
+		output = new int[eccLength];
+		block = new int[codewords.length + eccLength];
+		System.arraycopy(codewords, 0, block, 0, codewords.length);
+		ErrorCorrectionEncoding.encode(codewords, 0, codewords.length, eccLength, block, codewords.length);
+		damaged = block.clone();
+		for (int i = 0; i < eccLength / 2; i++) {
+			damaged[i * block.length / (eccLength / 2)] ^= 0x55;
+		}
+		work = new int[block.length];
+	}
+
+	@Benchmark
+	public int[] encode() {
+		return ErrorCorrectionEncoding.encode(codewords, eccLength);
+	}
+
+	@Benchmark
+	public int[] encodeInPlace() {
+		ErrorCorrectionEncoding.encode(codewords, 0, codewords.length, eccLength, output, 0);
+		return output;
+	}
+
+	@Benchmark
+	public int decodeClean() {
+		return ErrorCorrectionDecoding.decode(block, eccLength);
+	}
+
+	@Benchmark
+	public int decodeWithErrors() {
+		System.arraycopy(damaged, 0, work, 0, work.length);
+		return ErrorCorrectionDecoding.decode(work, eccLength);
+	}
+}
@@ -0,0 +1,97 @@
+package qrcode.benchmarks;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import qrcode.Helpers;
+import qrcode.MatrixConstruction;
+import qrcode.PngWriter;
+import qrcode.QRMatrix;
+import qrcode.Rasterizer;
+import qrcode.SvgWriter;
+
+/**
+ * Image output of a finished QR code: the Helpers file path, and the PNG, SVG
+ * and raster writers without I/O
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class ImageBenchmark {
+
+	@Param({ "1", "10" })
+	public int scale;
+
+	private int[][] matrix;
+	private QRMatrix packed;
+	private PngWriter pngWriter;
+	private final SvgWriter svgWriter = new SvgWriter();
+	private Path directory;
+	private File file;
+
+	@Setup(Level.Trial)
+	public void setUp(Payloads payloads) throws IOException {
+		matrix = MatrixConstruction.renderQRCodeMatrix(payloads.version, payloads.data, 0);
+		packed = QRMatrix.fromArray(matrix);
+		pngWriter = new PngWriter(scale, 4, 1, 6);
+		directory = Files.createTempDirectory("qrcode-benchmark");
+		file = directory.resolve("benchmark.png").toFile();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		pngWriter.close();
+		try (Stream<Path> files = Files.walk(directory)) {
+			files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+		}
+	}
+
+	@Benchmark
+	public void helpersWriteMatrix() throws IOException {
+		Helpers.writeMatrix(file, matrix);
+	}
+
+	@Benchmark
+	public OutputStream pngWriter() throws IOException {
+		OutputStream out = OutputStream.nullOutputStream();
+		pngWriter.write(packed, out);
+		return out;
+	}
+
+	@Benchmark
+	public Writer svgWriter() throws IOException {
+		Writer out = Writer.nullWriter();
+		svgWriter.write(packed, out);
+		return out;
+	}
+
+	@Benchmark
+	public BufferedImage rasterize() {
+		return Rasterizer.rasterize(packed, scale, 4, BufferedImage.TYPE_BYTE_BINARY);
+	}
+}
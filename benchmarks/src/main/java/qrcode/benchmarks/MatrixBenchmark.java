@@ -0,0 +1,66 @@
+package qrcode.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import qrcode.DataPlacement;
+import qrcode.MaskPatterns;
+import qrcode.MatrixConstruction;
+import qrcode.MatrixTemplates;
+import qrcode.QRCodeInfos.CorrectionLvl;
+import qrcode.QRMatrix;
+
+/**
+ * Construction of the function patterns and placement of the data with mask 0,
+ * on the ARGB arrays and on the packed matrices
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MatrixBenchmark {
+
+	private QRMatrix packed;
+
+	@Setup(Level.Trial)
+	public void setUp(Payloads payloads) {
+		packed = QRMatrix.forVersion(payloads.version);
+	}
+
+	@Benchmark
+	public int[][] constructMatrix(Payloads payloads) {
+		return MatrixConstruction.constructMatrix(payloads.version, 0);
+	}
+
+	/**
+	 * addDataInformation only fills the empty modules, so each call needs a new
+	 * matrix: compare with constructMatrix for the cost of the placement alone
+	 */
+	@Benchmark
+	public int[][] constructAndAddDataInformation(Payloads payloads) {
+		int[][] matrix = MatrixConstruction.constructMatrix(payloads.version, 0);
+		MatrixConstruction.addDataInformation(matrix, payloads.data, 0);
+		return matrix;
+	}
+
+	@Benchmark
+	public QRMatrix packedPlacement(Payloads payloads) {
+		MatrixTemplates.reset(packed, 0, CorrectionLvl.L);
+		DataPlacement.place(packed, payloads.data);
+		MaskPatterns.apply(packed, 0);
+		return packed;
+	}
+}
@@ -0,0 +1,40 @@
+package qrcode.benchmarks;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import qrcode.DataEncoding;
+import qrcode.QRCodeInfos;
+
+/**
+ * Payloads of the benchmarks: for each version, a label-like text filling the
+ * given share of the byte mode capacity at level L, and its encoded bits.
+ */
+@State(Scope.Benchmark)
+public class Payloads {
+
+	private static final String TEXT = "https://example.com/p/0042-7731?lot=A17&exp=2027-03&sn=";
+
+	@Param({ "1", "2", "3", "4" })
+	public int version;
+
+	@Param({ "50", "100" })
+	public int fillPercent;
+
+	public String payload;
+	public boolean[] data;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		int length = Math.max(1, QRCodeInfos.getMaxInputLength(version) * fillPercent / 100);
+		StringBuilder builder = new StringBuilder(length);
+		for (int i = 0; builder.length() < length; i++) {
+			builder.append(TEXT.charAt(i % TEXT.length()));
+		}
+		payload = builder.toString();
+		data = DataEncoding.byteModeEncoding(payload, version);
+	}
+}
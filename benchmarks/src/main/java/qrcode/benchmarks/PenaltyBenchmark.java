@@ -0,0 +1,67 @@
+package qrcode.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import qrcode.MatrixConstruction;
+import qrcode.PenaltyScorer;
+import qrcode.QRCodeInfos.CorrectionLvl;
+import qrcode.QRMatrix;
+
+/**
+ * Penalty scoring of one candidate and search of the best of the eight masks
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PenaltyBenchmark {
+
+	private int[][] matrix;
+	private QRMatrix packed;
+	private QRMatrix candidate;
+	private QRMatrix result;
+	private final PenaltyScorer scorer = new PenaltyScorer();
+
+	@Setup(Level.Trial)
+	public void setUp(Payloads payloads) {
+		matrix = MatrixConstruction.constructMatrix(payloads.version, 2);
+		MatrixConstruction.addDataInformation(matrix, payloads.data, 2);
+		packed = QRMatrix.fromArray(matrix);
+		candidate = QRMatrix.forVersion(payloads.version);
+		result = QRMatrix.forVersion(payloads.version);
+	}
+
+	@Benchmark
+	public int evaluate() {
+		return MatrixConstruction.evaluate(matrix);
+	}
+
+	@Benchmark
+	public int score() {
+		return scorer.score(packed);
+	}
+
+	@Benchmark
+	public int findBestMasking(Payloads payloads) {
+		return MatrixConstruction.findBestMasking(payloads.version, payloads.data);
+	}
+
+	@Benchmark
+	public int renderBestMask(Payloads payloads) {
+		return MatrixConstruction.renderBestMask(payloads.data, CorrectionLvl.L, candidate, result, scorer);
+	}
+}
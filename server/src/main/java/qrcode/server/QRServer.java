@@ -0,0 +1,108 @@
+package qrcode.server;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpServer;
+
+import qrcode.SymbolCache;
+
+/**
+ * Embedded HTTP server rendering QR codes on demand:
+ *
+ * <pre>
+ * GET /qr?data=hello&amp;ec=M&amp;scale=8&amp;fmt=png
+ * </pre>
+ *
+ * The responses carry a strong ETag, a hash of the image, and are answered
+ * with 304 when the client already has them. The QR codes and their images are kept in a bounded
+ * {@link SymbolCache}, whose statistics are served on <code>/stats</code>. The
+ * requests run on virtual threads when the runtime provides them, otherwise on
+ * a pool of platform threads.
+ */
+public final class QRServer implements AutoCloseable {
+
+	/** Default size of the response cache, in bytes */
+	public static final long DEFAULT_CACHE_BYTES = 64L << 20;
+
+	private final SymbolCache cache;
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final RenderHandler handler;
+
+	/**
+	 * Create and start a server
+	 *
+	 * @param port       the port to listen to, 0 for any free port
+	 * @param cacheBytes the size of the response cache, in bytes
+	 * @throws IOException if the port cannot be bound
+	 */
+	public QRServer(int port, long cacheBytes) throws IOException {
+		cache = new SymbolCache(cacheBytes);
+		handler = new RenderHandler(cache);
+		executor = newExecutor();
+		server = HttpServer.create(new InetSocketAddress(port), 0);
+		server.createContext("/", handler);
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	/**
+	 * @return the port the server listens to
+	 */
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * @return the cache of the QR codes and images served
+	 */
+	public SymbolCache getCache() {
+		return cache;
+	}
+
+	/**
+	 * Stop the server, waiting at most one second for the requests in progress
+	 */
+	@Override
+	public void close() {
+		server.stop(1);
+		executor.shutdown();
+		try {
+			executor.awaitTermination(1, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		handler.close();
+	}
+
+	/**
+	 * @return an executor starting a virtual thread per task if the runtime has
+	 *         them (Java 21), a pool of platform threads otherwise
+	 */
+	static ExecutorService newExecutor() {
+		try {
+			Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) factory.invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() * 4);
+		}
+	}
+
+	/**
+	 * @param args the port (default 8080) and the cache size in megabytes
+	 *             (default 64)
+	 * @throws IOException if the port cannot be bound
+	 */
+	public static void main(String[] args) throws IOException {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+		long cacheBytes = args.length > 1 ? Long.parseLong(args[1]) << 20 : DEFAULT_CACHE_BYTES;
+		QRServer server = new QRServer(port, cacheBytes);
+		Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+		System.out.println("Listening on http://localhost:" + server.getPort() + "/qr?data=...");
+	}
+}
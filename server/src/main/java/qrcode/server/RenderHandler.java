@@ -0,0 +1,215 @@
+package qrcode.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import qrcode.EncoderContext;
+import qrcode.PngWriter;
+import qrcode.QRMatrix;
+import qrcode.Segmentation;
+import qrcode.SvgWriter;
+import qrcode.SymbolCache;
+
+/**
+ * Handler of <code>/qr</code>: renders the QR code described by the query, see
+ * {@link RenderRequest}, and of <code>/stats</code>: the statistics of the
+ * cache. Each rendered request looks up its image once, so the image hit rate
+ * is the hit rate of the responses.
+ *
+ * The rendered images and the QR codes are cached, so an image asked for again
+ * costs a lookup and another scale or format of the same payload skips the
+ * encoding.
+ *
+ * The encoder contexts and png writers are not thread-safe and the requests may
+ * run on virtual threads, so they are borrowed from pools instead of being kept
+ * per thread.
+ */
+final class RenderHandler implements HttpHandler {
+
+	private static final String CACHE_CONTROL = "public, max-age=86400";
+
+	/*
+	 * Version of the cache keys, the actual version only depends on the payload
+	 * and level
+	 */
+	private static final int SMALLEST_VERSION = 0;
+
+	private final SymbolCache cache;
+	private final Map<Integer, Queue<EncoderContext>> contexts = new ConcurrentHashMap<>();
+	private final Map<Integer, Queue<PngWriter>> pngWriters = new ConcurrentHashMap<>();
+
+	RenderHandler(SymbolCache cache) {
+		this.cache = cache;
+	}
+
+	@Override
+	public void handle(HttpExchange exchange) throws IOException {
+		try {
+			respond(exchange);
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private void respond(HttpExchange exchange) throws IOException {
+		String method = exchange.getRequestMethod();
+		boolean head = method.equals("HEAD");
+		if (!head && !method.equals("GET")) {
+			exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+			sendText(exchange, 405, "Method not allowed");
+			return;
+		}
+		String path = exchange.getRequestURI().getPath();
+		if (path.equals("/stats")) {
+			sendText(exchange, 200, cache.toString());
+			return;
+		}
+		if (!path.equals("/qr")) {
+			sendText(exchange, 404, "Not found");
+			return;
+		}
+		RenderRequest request;
+		byte[] image;
+		try {
+			request = RenderRequest.parse(exchange.getRequestURI().getRawQuery());
+			SymbolCache.Key key = SymbolCache.key(request.data.getBytes(StandardCharsets.ISO_8859_1),
+					SMALLEST_VERSION, request.level, SymbolCache.BEST_MASK);
+			image = cache.getImage(key, request.variant());
+			if (image == null) {
+				image = render(request, cache.getMatrix(key, this::encode));
+				cache.putImage(key, request.variant(), image);
+			}
+		} catch (IllegalArgumentException e) {
+			sendText(exchange, 400, e.getMessage());
+			return;
+		}
+		String etag = etag(image);
+		Headers headers = exchange.getResponseHeaders();
+		headers.set("ETag", etag);
+		headers.set("Cache-Control", CACHE_CONTROL);
+		if (matches(exchange.getRequestHeaders().getFirst("If-None-Match"), etag)) {
+			exchange.sendResponseHeaders(304, -1);
+			return;
+		}
+		exchange.getResponseHeaders().set("Content-Type", request.contentType());
+		if (head) {
+			exchange.getResponseHeaders().set("Content-Length", Integer.toString(image.length));
+			exchange.sendResponseHeaders(200, -1);
+			return;
+		}
+		exchange.sendResponseHeaders(200, image.length);
+		exchange.getResponseBody().write(image);
+	}
+
+	/**
+	 * The tag is derived from the image itself rather than from the request, so
+	 * a change of the rendering changes the tags of the images it changes
+	 *
+	 * @return the strong entity tag of the image, quoted
+	 */
+	static String etag(byte[] image) {
+		// 64 bit FNV-1a of the bytes
+		long hash = 0xCBF29CE484222325L;
+		for (byte b : image) {
+			hash = (hash ^ (b & 0xFF)) * 0x100000001B3L;
+		}
+		return '"' + Long.toHexString(hash) + '"';
+	}
+
+	/**
+	 * @return true if the If-None-Match header lists the tag or is *
+	 */
+	static boolean matches(String ifNoneMatch, String etag) {
+		if (ifNoneMatch == null) {
+			return false;
+		}
+		for (String tag : ifNoneMatch.split(",")) {
+			tag = tag.trim();
+			if (tag.startsWith("W/")) {
+				tag = tag.substring(2);
+			}
+			if (tag.equals("*") || tag.equals(etag)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the QR code of the smallest version holding the payload, copied
+	 *         before the context goes back to the pool and another request
+	 *         overwrites it
+	 */
+	QRMatrix encode(SymbolCache.Key key) {
+		String data = new String(key.getPayload(), StandardCharsets.ISO_8859_1);
+		int version = Segmentation.smallestVersion(key.getPayload(), key.getLevel());
+		int contextKey = version * 4 + key.getLevel().ordinal();
+		Queue<EncoderContext> contextPool = contexts.computeIfAbsent(contextKey, k -> new ConcurrentLinkedQueue<>());
+		EncoderContext context = contextPool.poll();
+		if (context == null) {
+			context = new EncoderContext(version, key.getLevel());
+		}
+		try {
+			return context.encode(data).copy();
+		} finally {
+			contextPool.add(context);
+		}
+	}
+
+	private byte[] render(RenderRequest request, QRMatrix matrix) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		if (request.svg) {
+			Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+			new SvgWriter(request.border, 0, null).write(matrix, writer);
+			writer.flush();
+		} else {
+			writePng(matrix, request, out);
+		}
+		return out.toByteArray();
+	}
+
+	private void writePng(QRMatrix matrix, RenderRequest request, OutputStream out) throws IOException {
+		int writerKey = request.scale * 32 + request.border;
+		Queue<PngWriter> writerPool = pngWriters.computeIfAbsent(writerKey, key -> new ConcurrentLinkedQueue<>());
+		PngWriter writer = writerPool.poll();
+		if (writer == null) {
+			writer = new PngWriter(request.scale, request.border, 1, 6);
+		}
+		try {
+			writer.write(matrix, out);
+		} finally {
+			writerPool.add(writer);
+		}
+	}
+
+	private static void sendText(HttpExchange exchange, int status, String message) throws IOException {
+		byte[] body = (message + "\n").getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+		exchange.sendResponseHeaders(status, body.length);
+		exchange.getResponseBody().write(body);
+	}
+
+	/**
+	 * Release the native memory of the png writers
+	 */
+	void close() {
+		for (Queue<PngWriter> writers : pngWriters.values()) {
+			PngWriter writer;
+			while ((writer = writers.poll()) != null) {
+				writer.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,124 @@
+package qrcode.server;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import qrcode.QRCodeInfos;
+import qrcode.QRCodeInfos.CorrectionLvl;
+import qrcode.QRCodeInfos.Mode;
+
+/**
+ * Parameters of a <code>GET /qr</code> request.
+ *
+ * <ul>
+ * <li><code>data</code>: the text to encode, required</li>
+ * <li><code>ec</code>: the error correction level L, M, Q or H (default M)</li>
+ * <li><code>scale</code>: the pixels per module of png images, 1 to 40 (default
+ * 4)</li>
+ * <li><code>border</code>: the quiet zone in modules, 0 to 16 (default 4)</li>
+ * <li><code>fmt</code>: png or svg (default png)</li>
+ * </ul>
+ */
+final class RenderRequest {
+
+	// the most digits of a QR code, longer data never fits
+	static final int MAX_DATA_LENGTH = QRCodeInfos.getCapacity(QRCodeInfos.getMaxVersion(), CorrectionLvl.L, Mode.NUMERIC);
+
+	final String data;
+	final CorrectionLvl level;
+	final int scale;
+	final int border;
+	final boolean svg;
+
+	private RenderRequest(String data, CorrectionLvl level, int scale, int border, boolean svg) {
+		this.data = data;
+		this.level = level;
+		this.scale = scale;
+		this.border = border;
+		this.svg = svg;
+	}
+
+	/**
+	 * @param rawQuery the raw query string of the request, may be null
+	 * @return the parsed request
+	 * @throws IllegalArgumentException if a parameter is missing or invalid
+	 */
+	static RenderRequest parse(String rawQuery) {
+		Map<String, String> parameters = new HashMap<>();
+		if (rawQuery != null && !rawQuery.isEmpty()) {
+			for (String pair : rawQuery.split("&")) {
+				int equals = pair.indexOf('=');
+				String name = decode(equals < 0 ? pair : pair.substring(0, equals));
+				String value = equals < 0 ? "" : decode(pair.substring(equals + 1));
+				parameters.putIfAbsent(name, value);
+			}
+		}
+		String data = parameters.get("data");
+		if (data == null) {
+			throw new IllegalArgumentException("Missing parameter: data");
+		}
+		if (data.length() > MAX_DATA_LENGTH) {
+			throw new IllegalArgumentException("The data is too long for a QR code");
+		}
+		// the symbols hold ISO-8859-1 bytes, anything else would be encoded as '?'
+		if (!StandardCharsets.ISO_8859_1.newEncoder().canEncode(data)) {
+			throw new IllegalArgumentException("The data has characters outside ISO-8859-1");
+		}
+		CorrectionLvl level;
+		try {
+			level = CorrectionLvl.valueOf(parameters.getOrDefault("ec", "M").toUpperCase(Locale.ROOT));
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("The parameter ec has to be L, M, Q or H");
+		}
+		int scale = number(parameters, "scale", 4, 1, 40);
+		int border = number(parameters, "border", 4, 0, 16);
+		String format = parameters.getOrDefault("fmt", "png").toLowerCase(Locale.ROOT);
+		if (!format.equals("png") && !format.equals("svg")) {
+			throw new IllegalArgumentException("The parameter fmt has to be png or svg");
+		}
+		return new RenderRequest(data, level, scale, border, format.equals("svg"));
+	}
+
+	/**
+	 * @return the content type of the response
+	 */
+	String contentType() {
+		return svg ? "image/svg+xml" : "image/png";
+	}
+
+	/**
+	 * @return the format and rendering options of the image, the scale being
+	 *         ignored for svg documents
+	 */
+	String variant() {
+		return (svg ? "svg" : "png/" + scale) + "/" + border;
+	}
+
+	private static int number(Map<String, String> parameters, String name, int defaultValue, int min, int max) {
+		String value = parameters.get(name);
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			int number = Integer.parseInt(value);
+			if (number >= min && number <= max) {
+				return number;
+			}
+		} catch (NumberFormatException e) {
+			// reported below
+		}
+		throw new IllegalArgumentException("The parameter " + name + " has to be between " + min + " and " + max);
+	}
+
+	private static String decode(String text) {
+		try {
+			return URLDecoder.decode(text, StandardCharsets.UTF_8.name());
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
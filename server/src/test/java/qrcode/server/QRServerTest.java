@@ -0,0 +1,170 @@
+package qrcode.server;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import qrcode.QRCodeInfos.CorrectionLvl;
+import qrcode.SymbolCache;
+import qrcode.decode.QRDecoder;
+
+public class QRServerTest {
+
+	private static final byte[] PNG_SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+
+	private static QRServer server;
+
+	@BeforeAll
+	static void start() throws IOException {
+		server = new QRServer(0, QRServer.DEFAULT_CACHE_BYTES);
+	}
+
+	@AfterAll
+	static void stop() {
+		server.close();
+	}
+
+	@Test
+	void testPng() throws IOException {
+		HttpURLConnection connection = open("/qr?data=hello%20world&ec=H&scale=3");
+		assertEquals(200, connection.getResponseCode());
+		assertEquals("image/png", connection.getContentType());
+		assertNotNull(connection.getHeaderField("ETag"));
+		byte[] body = read(connection);
+		assertEquals(connection.getContentLength(), body.length);
+		byte[] signature = new byte[PNG_SIGNATURE.length];
+		System.arraycopy(body, 0, signature, 0, signature.length);
+		assertArrayEquals(PNG_SIGNATURE, signature);
+		// served again from the cache, without looking up the symbol
+		long imageHits = server.getCache().getImageHitCount();
+		long hits = server.getCache().getHitCount();
+		assertArrayEquals(body, read(open("/qr?data=hello%20world&ec=H&scale=3")));
+		assertEquals(imageHits + 1, server.getCache().getImageHitCount());
+		assertEquals(hits, server.getCache().getHitCount());
+		// another scale reuses the cached symbol
+		read(open("/qr?data=hello%20world&ec=H&scale=4"));
+		assertEquals(imageHits + 1, server.getCache().getImageHitCount());
+		assertEquals(hits + 1, server.getCache().getHitCount());
+	}
+
+	@Test
+	void testSvg() throws IOException {
+		HttpURLConnection connection = open("/qr?data=HELLO&fmt=svg");
+		assertEquals(200, connection.getResponseCode());
+		assertEquals("image/svg+xml", connection.getContentType());
+		String document = new String(read(connection), StandardCharsets.UTF_8);
+		assertTrue(document.startsWith("<?xml"));
+		assertTrue(document.trim().endsWith("</svg>"));
+	}
+
+	@Test
+	void testConditionalRequest() throws IOException {
+		HttpURLConnection first = open("/qr?data=etag");
+		String etag = first.getHeaderField("ETag");
+		assertEquals(RenderHandler.etag(read(first)), etag);
+		HttpURLConnection second = open("/qr?data=etag");
+		second.setRequestProperty("If-None-Match", etag);
+		assertEquals(304, second.getResponseCode());
+		HttpURLConnection other = open("/qr?data=etag&scale=5");
+		other.setRequestProperty("If-None-Match", etag);
+		assertEquals(200, other.getResponseCode());
+		read(other);
+	}
+
+	@Test
+	void testErrors() throws IOException {
+		assertEquals(400, open("/qr").getResponseCode());
+		assertEquals(400, open("/qr?data=a&ec=X").getResponseCode());
+		assertEquals(400, open("/qr?data=a&scale=0").getResponseCode());
+		assertEquals(400, open("/qr?data=a&fmt=gif").getResponseCode());
+		assertEquals(400, open("/qr?data=" + "a".repeat(3000) + "&ec=H").getResponseCode());
+		// the euro sign has no ISO-8859-1 byte, the e with an acute accent has one
+		assertEquals(400, open("/qr?data=%E2%82%AC").getResponseCode());
+		assertEquals(200, open("/qr?data=%C3%A9").getResponseCode());
+		assertEquals(404, open("/other").getResponseCode());
+		assertEquals(200, open("/stats").getResponseCode());
+		HttpURLConnection post = open("/qr?data=a");
+		post.setRequestMethod("POST");
+		assertEquals(405, post.getResponseCode());
+	}
+
+	@Test
+	void testEtag() {
+		assertEquals(RenderHandler.etag(new byte[] { 1, 2, 3 }), RenderHandler.etag(new byte[] { 1, 2, 3 }));
+		assertNotEquals(RenderHandler.etag(new byte[] { 1, 2, 3 }), RenderHandler.etag(new byte[] { 1, 2, 4 }));
+		assertTrue(RenderHandler.etag(new byte[0]).startsWith("\""));
+	}
+
+	@Test
+	void testMatches() {
+		assertTrue(RenderHandler.matches("\"a\", \"b\"", "\"b\""));
+		assertTrue(RenderHandler.matches("W/\"b\"", "\"b\""));
+		assertTrue(RenderHandler.matches("*", "\"b\""));
+		assertEquals(false, RenderHandler.matches("\"a\"", "\"b\""));
+		assertEquals(false, RenderHandler.matches(null, "\"b\""));
+	}
+
+	@Test
+	void testConcurrentEncoding() throws InterruptedException, ExecutionException {
+		// nothing is cached: every lookup encodes with a pooled context. A matrix
+		// shared with the pool is overwritten by another thread about once in ten
+		// thousand encodings, hence the number of them
+		SymbolCache cache = new SymbolCache(0);
+		RenderHandler handler = new RenderHandler(cache);
+		ExecutorService pool = Executors.newFixedThreadPool(16);
+		try {
+			List<Future<Integer>> workers = new ArrayList<>();
+			for (int t = 0; t < 16; t++) {
+				int thread = t;
+				workers.add(pool.submit(() -> {
+					int wrong = 0;
+					for (int i = 0; i < 5000; i++) {
+						String payload = "thread " + thread + " payload " + i;
+						SymbolCache.Key key = SymbolCache.key(payload.getBytes(StandardCharsets.ISO_8859_1), 0,
+								CorrectionLvl.M, SymbolCache.BEST_MASK);
+						if (!QRDecoder.decode(cache.getMatrix(key, handler::encode)).getText().equals(payload)) {
+							wrong++;
+						}
+					}
+					return wrong;
+				}));
+			}
+			for (Future<Integer> worker : workers) {
+				assertEquals(0, worker.get());
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	private static HttpURLConnection open(String path) throws IOException {
+		return (HttpURLConnection) new URL("http://localhost:" + server.getPort() + path).openConnection();
+	}
+
+	private static byte[] read(HttpURLConnection connection) throws IOException {
+		try (InputStream in = connection.getInputStream()) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			in.transferTo(out);
+			return out.toByteArray();
+		}
+	}
+}
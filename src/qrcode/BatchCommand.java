@@ -0,0 +1,375 @@
+package qrcode;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import qrcode.QRCodeInfos.CorrectionLvl;
+import qrcode.decode.QRDecoder;
+
+/**
+ * Headless batch encoder: one QR code per line of the input, written as PNG or
+ * SVG files in a directory or in a single zip archive.
+ *
+ * The lines are read by the calling thread and encoded on a pool of worker
+ * threads, each with its own {@link EncoderContext} per version. At most a few
+ * lines per worker are in flight, so the input can be larger than memory.
+ */
+public final class BatchCommand {
+
+	private static final String USAGE = String.join(System.lineSeparator(),
+			"Usage: qrcode [options] [input]",
+			"Encode each line of the input file (or of stdin if absent or -) as a QR code.",
+			"",
+			"  -o, --output PATH    output directory, or zip archive if PATH ends with .zip (default: out)",
+			"  -f, --format FORMAT  png or svg (default: png)",
+			"  -l, --level LEVEL    error correction level L, M, Q or H (default: L)",
+			"  -v, --version N      version of all the symbols (default: smallest that fits each line)",
+			"  -t, --threads N      number of worker threads (default: number of processors)",
+			"  -s, --scale N        pixels per module of the png images (default: 4)",
+			"  -b, --border N       quiet zone, in modules (default: 4)",
+			"      --verify         read back each symbol from its image and fail the lines that differ",
+			"      --metrics        print the per-stage metrics at the end",
+			"  -h, --help           print this message");
+
+	/*
+	 * Exit status
+	 */
+	static final int SUCCESS = 0;
+	static final int FAILED_LINES = 1;
+	static final int USAGE_ERROR = 2;
+
+	/*
+	 * Lines in flight per worker thread
+	 */
+	private static final int QUEUE_PER_THREAD = 4;
+
+	private String input = "-";
+	private String output = "out";
+	private boolean svg;
+	private CorrectionLvl level = CorrectionLvl.L;
+	private int version;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private int scale = 4;
+	private int border = 4;
+	private boolean metrics;
+	private boolean verify;
+
+	private final PrintStream out;
+	private final PrintStream err;
+
+	private final AtomicInteger encoded = new AtomicInteger();
+	private final AtomicInteger failed = new AtomicInteger();
+	private final AtomicLong outputBytes = new AtomicLong();
+	private final Histogram latencies = new Histogram();
+	private final Queue<PngWriter> pngWriters = new ConcurrentLinkedQueue<>();
+
+	private ThreadLocal<EncoderContext[]> contexts;
+	private ThreadLocal<PngWriter> pngWriter;
+	private ZipOutputStream zip;
+	private Path directory;
+
+	private BatchCommand(PrintStream out, PrintStream err) {
+		this.out = out;
+		this.err = err;
+	}
+
+	/**
+	 * Run the command
+	 *
+	 * @param args  the command line arguments
+	 * @param stdin the standard input, read when no input file is given
+	 * @param out   receives the summary
+	 * @param err   receives the usage and the errors of the lines
+	 * @return the exit status: 0 on success, 1 if some lines could not be
+	 *         encoded, 2 on a usage or I/O error
+	 */
+	public static int run(String[] args, InputStream stdin, PrintStream out, PrintStream err) {
+		BatchCommand command = new BatchCommand(out, err);
+		try {
+			if (!command.parse(args)) {
+				out.println(USAGE);
+				return SUCCESS;
+			}
+		} catch (IllegalArgumentException e) {
+			err.println(e.getMessage());
+			err.println(USAGE);
+			return USAGE_ERROR;
+		}
+		try {
+			return command.execute(stdin);
+		} catch (IOException e) {
+			err.println("I/O error: " + e.getMessage());
+			return USAGE_ERROR;
+		}
+	}
+
+	/**
+	 * @return false if the help was requested
+	 */
+	private boolean parse(String[] args) {
+		boolean inputSet = false;
+		for (int i = 0; i < args.length; i++) {
+			String arg = args[i];
+			switch (arg) {
+			case "-h":
+			case "--help":
+				return false;
+			case "--metrics":
+				metrics = true;
+				break;
+			case "--verify":
+				verify = true;
+				break;
+			case "-o":
+			case "--output":
+				output = value(args, ++i, arg);
+				break;
+			case "-f":
+			case "--format":
+				String format = value(args, ++i, arg).toLowerCase(Locale.ROOT);
+				if (!format.equals("png") && !format.equals("svg")) {
+					throw new IllegalArgumentException("Unknown format: " + format);
+				}
+				svg = format.equals("svg");
+				break;
+			case "-l":
+			case "--level":
+				String name = value(args, ++i, arg).toUpperCase(Locale.ROOT);
+				try {
+					level = CorrectionLvl.valueOf(name);
+				} catch (IllegalArgumentException e) {
+					throw new IllegalArgumentException("Unknown error correction level: " + name);
+				}
+				break;
+			case "-v":
+			case "--version":
+				version = number(args, ++i, arg, 1, QRCodeInfos.getMaxVersion());
+				break;
+			case "-t":
+			case "--threads":
+				threads = number(args, ++i, arg, 1, 1024);
+				break;
+			case "-s":
+			case "--scale":
+				scale = number(args, ++i, arg, 1, 100);
+				break;
+			case "-b":
+			case "--border":
+				border = number(args, ++i, arg, 0, 100);
+				break;
+			default:
+				if (arg.startsWith("-") && !arg.equals("-")) {
+					throw new IllegalArgumentException("Unknown option: " + arg);
+				}
+				if (inputSet) {
+					throw new IllegalArgumentException("Only one input can be given");
+				}
+				input = arg;
+				inputSet = true;
+			}
+		}
+		return true;
+	}
+
+	private static String value(String[] args, int i, String option) {
+		if (i >= args.length) {
+			throw new IllegalArgumentException("Missing value of " + option);
+		}
+		return args[i];
+	}
+
+	private static int number(String[] args, int i, String option, int min, int max) {
+		String text = value(args, i, option);
+		try {
+			int number = Integer.parseInt(text);
+			if (number >= min && number <= max) {
+				return number;
+			}
+		} catch (NumberFormatException e) {
+			// reported below
+		}
+		throw new IllegalArgumentException("The value of " + option + " has to be between " + min + " and " + max);
+	}
+
+	private int execute(InputStream stdin) throws IOException {
+		MetricsRecorder recorder = null;
+		if (metrics) {
+			recorder = new MetricsRecorder();
+			Metrics.setListener(recorder);
+		}
+		contexts = ThreadLocal.withInitial(() -> new EncoderContext[QRCodeInfos.getMaxVersion() + 1]);
+		pngWriter = ThreadLocal.withInitial(() -> {
+			PngWriter writer = new PngWriter(scale, border, 1, 6);
+			pngWriters.add(writer);
+			return writer;
+		});
+		if (output.toLowerCase(Locale.ROOT).endsWith(".zip")) {
+			Path parent = Paths.get(output).toAbsolutePath().getParent();
+			Files.createDirectories(parent);
+			zip = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(Paths.get(output))));
+		} else {
+			directory = Files.createDirectories(Paths.get(output));
+		}
+
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		Semaphore inFlight = new Semaphore(threads * QUEUE_PER_THREAD);
+		long start = System.nanoTime();
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+				input.equals("-") ? stdin : Files.newInputStream(Paths.get(input)), StandardCharsets.UTF_8))) {
+			String line;
+			int lineNumber = 0;
+			while ((line = reader.readLine()) != null) {
+				lineNumber++;
+				if (line.isEmpty()) {
+					continue;
+				}
+				String payload = line;
+				int number = lineNumber;
+				inFlight.acquireUninterruptibly();
+				pool.execute(() -> {
+					try {
+						process(number, payload);
+					} finally {
+						inFlight.release();
+					}
+				});
+			}
+		} finally {
+			pool.shutdown();
+			awaitTermination(pool);
+			for (PngWriter writer : pngWriters) {
+				writer.close();
+			}
+			if (zip != null) {
+				zip.close();
+			}
+			if (metrics) {
+				Metrics.setListener(null);
+			}
+		}
+		long elapsed = System.nanoTime() - start;
+
+		double seconds = elapsed / 1e9;
+		out.printf(Locale.ROOT, "Encoded %d symbols in %.3f s (%.0f symbols/s, %d bytes written), %d failed%n",
+				encoded.get(), seconds, encoded.get() / Math.max(seconds, 1e-9), outputBytes.get(), failed.get());
+		out.printf(Locale.ROOT, "Latency per symbol: p50 %.1f us, p99 %.1f us, max %.1f us%n",
+				latencies.getPercentile(50) / 1e3, latencies.getPercentile(99) / 1e3, latencies.getMax() / 1e3);
+		if (recorder != null) {
+			out.print(recorder.report());
+		}
+		return failed.get() == 0 ? SUCCESS : FAILED_LINES;
+	}
+
+	private static void awaitTermination(ExecutorService pool) {
+		boolean interrupted = false;
+		while (true) {
+			try {
+				if (pool.awaitTermination(1, TimeUnit.MINUTES)) {
+					break;
+				}
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Encode and write one line, on a worker thread
+	 */
+	private void process(int lineNumber, String payload) {
+		long start = System.nanoTime();
+		try {
+			// the symbols hold ISO-8859-1 bytes, anything else would be encoded as '?'
+			if (!StandardCharsets.ISO_8859_1.newEncoder().canEncode(payload)) {
+				throw new IllegalArgumentException("The line has characters outside ISO-8859-1");
+			}
+			int symbolVersion = version > 0 ? version : Segmentation.smallestVersion(payload.getBytes(StandardCharsets.ISO_8859_1), level);
+			EncoderContext[] threadContexts = contexts.get();
+			EncoderContext context = threadContexts[symbolVersion];
+			if (context == null) {
+				context = new EncoderContext(symbolVersion, level);
+				threadContexts[symbolVersion] = context;
+			}
+			QRMatrix matrix = context.encode(payload);
+			if (verify) {
+				verify(matrix, payload);
+			}
+			write(String.format("%06d.%s", lineNumber, svg ? "svg" : "png"), matrix);
+			encoded.incrementAndGet();
+			latencies.record(System.nanoTime() - start);
+		} catch (IllegalArgumentException | IOException e) {
+			failed.incrementAndGet();
+			err.println("line " + lineNumber + ": " + e.getMessage());
+		} catch (RuntimeException e) {
+			// a bug rather than a bad line, but the line is still counted and reported
+			failed.incrementAndGet();
+			err.println("line " + lineNumber + ": " + e);
+		}
+	}
+
+	/**
+	 * Decode the image of the QR code at the output scale and border
+	 *
+	 * @throws IllegalArgumentException if the decoded payload is not the line
+	 */
+	private void verify(QRMatrix matrix, String payload) {
+		BufferedImage image = Rasterizer.rasterize(matrix, svg ? 1 : scale, border, BufferedImage.TYPE_BYTE_BINARY);
+		if (!QRDecoder.decode(image).matches(payload.getBytes(StandardCharsets.ISO_8859_1))) {
+			throw new IllegalArgumentException("the symbol does not decode to the line");
+		}
+	}
+
+	private void write(String name, QRMatrix matrix) throws IOException {
+		if (zip == null) {
+			try (OutputStream file = new BufferedOutputStream(Files.newOutputStream(directory.resolve(name)))) {
+				writeImage(matrix, file);
+			}
+			outputBytes.addAndGet(Files.size(directory.resolve(name)));
+			return;
+		}
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		writeImage(matrix, buffer);
+		synchronized (zip) {
+			zip.putNextEntry(new ZipEntry(name));
+			buffer.writeTo(zip);
+			zip.closeEntry();
+		}
+		outputBytes.addAndGet(buffer.size());
+	}
+
+	private void writeImage(QRMatrix matrix, OutputStream stream) throws IOException {
+		if (svg) {
+			Writer writer = new OutputStreamWriter(stream, StandardCharsets.UTF_8);
+			new SvgWriter(border, 0, null).write(matrix, writer);
+		} else {
+			pngWriter.get().write(matrix, stream);
+		}
+	}
+}
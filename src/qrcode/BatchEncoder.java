@@ -0,0 +1,153 @@
+package qrcode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import qrcode.QRCodeInfos.CorrectionLvl;
+
+/**
+ * Encode many payloads with the same version and error correction level.
+ *
+ * The payloads are pulled one by one by a fixed number of worker threads. Each
+ * worker keeps its own {@link EncoderContext} from one item to the next, so
+ * encoding an item does not allocate.
+ */
+public final class BatchEncoder implements AutoCloseable {
+
+	/**
+	 * Receives the symbols of {@link BatchEncoder#encodeAll(Iterable, SymbolConsumer)}
+	 */
+	public interface SymbolConsumer {
+		/**
+		 * Called from a worker thread once a payload has been encoded. The matrix is a
+		 * scratch buffer of the worker: it is only valid during the call and must be
+		 * copied to be kept.
+		 *
+		 * @param index   the position of the payload in the input
+		 * @param payload the encoded payload
+		 * @param matrix  the finished QR code
+		 */
+		void accept(int index, String payload, QRMatrix matrix);
+	}
+
+	private final int threads;
+	private final ExecutorService executor;
+	private final ThreadLocal<EncoderContext> contexts;
+
+	/**
+	 * @param version the version of the QR codes
+	 * @param level   the error correction level of the QR codes
+	 * @param threads the number of worker threads
+	 */
+	public BatchEncoder(int version, CorrectionLvl level, int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("The number of threads must be positive");
+		}
+		// fail here rather than in the workers on an invalid version
+		QRCodeInfos.getCodeWordsLength(version, level);
+		this.threads = threads;
+		this.executor = Executors.newFixedThreadPool(threads);
+		this.contexts = ThreadLocal.withInitial(() -> new EncoderContext(version, level));
+	}
+
+	/**
+	 * Encode every payload
+	 *
+	 * @param payloads the strings to encode
+	 * @return the QR codes, in the order of the payloads
+	 * @throws IllegalArgumentException if a payload does not fit in the version
+	 */
+	public List<QRMatrix> encodeAll(List<String> payloads) {
+		QRMatrix[] results = new QRMatrix[payloads.size()];
+		encodeAll(payloads, (index, payload, matrix) -> results[index] = matrix.copy());
+		return Arrays.asList(results);
+	}
+
+	/**
+	 * Encode every payload and hand each QR code to the consumer as soon as it is
+	 * finished. The payloads are read lazily, so the input can be larger than
+	 * memory. The consumer is called concurrently from the worker threads, in no
+	 * particular order. The other workers stop taking payloads once one of them
+	 * fails, so the remaining input is not read.
+	 *
+	 * @param payloads the strings to encode
+	 * @param consumer receives the finished QR codes
+	 * @throws IllegalArgumentException if a payload does not fit in the version
+	 */
+	public void encodeAll(Iterable<String> payloads, SymbolConsumer consumer) {
+		Source source = new Source(payloads.iterator());
+		List<CompletableFuture<Void>> workers = new ArrayList<>(threads);
+		for (int i = 0; i < threads; i++) {
+			workers.add(CompletableFuture.runAsync(() -> work(source, consumer), executor));
+		}
+		try {
+			CompletableFuture.allOf(workers.toArray(new CompletableFuture<?>[0])).join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Encode one payload with the context of the calling thread
+	 *
+	 * @param payload the string to encode
+	 * @return the QR code
+	 */
+	public QRMatrix encode(String payload) {
+		return contexts.get().encode(payload).copy();
+	}
+
+	@Override
+	public void close() {
+		executor.shutdown();
+	}
+
+	private void work(Source source, SymbolConsumer consumer) {
+		EncoderContext context = contexts.get();
+		Source.Item item = new Source.Item();
+		try {
+			while (source.next(item)) {
+				consumer.accept(item.index, item.payload, context.encode(item.payload));
+			}
+		} catch (RuntimeException | Error e) {
+			source.failed = true;
+			throw e;
+		}
+	}
+
+	/**
+	 * Shared iterator over the payloads, stopped at the first failure of a worker
+	 */
+	private static final class Source {
+		private final Iterator<String> payloads;
+		private int index;
+		private volatile boolean failed;
+
+		private Source(Iterator<String> payloads) {
+			this.payloads = payloads;
+		}
+
+		private synchronized boolean next(Item item) {
+			if (failed || !payloads.hasNext()) {
+				return false;
+			}
+			item.index = index++;
+			item.payload = payloads.next();
+			return true;
+		}
+
+		private static final class Item {
+			private int index;
+			private String payload;
+		}
+	}
+}
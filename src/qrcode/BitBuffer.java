@@ -0,0 +1,156 @@
+package qrcode;
+
+import java.util.Arrays;
+
+/**
+ * Growable sequence of bits packed into <code>long</code> words.
+ *
+ * Fields of any width up to 32 bits are appended most significant bit first.
+ * Bit <code>i</code> of the sequence is the bit <code>63 - i % 64</code> of the
+ * word <code>i / 64</code>, so the bytes of the sequence are aligned on the
+ * bytes of the words and codeword <code>k</code> is read with one shift.
+ */
+public final class BitBuffer {
+
+	private long[] words;
+	private int length;
+
+	public BitBuffer() {
+		this(64);
+	}
+
+	/**
+	 * @param capacity the number of bits the buffer holds before growing
+	 */
+	public BitBuffer(int capacity) {
+		words = new long[Math.max(1, (capacity + 63) >>> 6)];
+	}
+
+	/**
+	 * @return the number of bits of the sequence
+	 */
+	public int length() {
+		return length;
+	}
+
+	/**
+	 * Empty the sequence, keeping the capacity
+	 */
+	public void clear() {
+		Arrays.fill(words, 0, (length + 63) >>> 6, 0L);
+		length = 0;
+	}
+
+	/**
+	 * Append the lowest bits of a value, most significant bit first
+	 *
+	 * @param value the value to append, its bits above the width are ignored
+	 * @param width the number of bits to append, between 0 and 32
+	 */
+	public void append(int value, int width) {
+		if (width < 0 || width > 32) {
+			throw new IllegalArgumentException("The width has to be between 0 and 32");
+		}
+		if (width == 0) {
+			return;
+		}
+		ensureCapacity(length + width);
+		long bits = value & ((1L << width) - 1);
+		int word = length >>> 6;
+		int free = 64 - (length & 63);
+		if (width <= free) {
+			words[word] |= bits << (free - width);
+		} else {
+			words[word] |= bits >>> (width - free);
+			words[word + 1] |= bits << (64 - (width - free));
+		}
+		length += width;
+	}
+
+	/**
+	 * @param bit the bit to append
+	 */
+	public void appendBit(boolean bit) {
+		append(bit ? 1 : 0, 1);
+	}
+
+	/**
+	 * Append codewords of 8 bits
+	 *
+	 * @param bytes  the codewords, one byte per entry
+	 * @param offset the index of the first codeword to append
+	 * @param count  the number of codewords to append
+	 */
+	public void appendBytes(int[] bytes, int offset, int count) {
+		for (int i = offset; i < offset + count; i++) {
+			append(bytes[i], 8);
+		}
+	}
+
+	/**
+	 * Append zeros up to the next multiple of 8 bits
+	 */
+	public void padToByte() {
+		append(0, -length & 7);
+	}
+
+	/**
+	 * @param index the index of the bit, between 0 and length() - 1
+	 * @return the bit
+	 */
+	public boolean getBit(int index) {
+		checkIndex(index);
+		return ((words[index >>> 6] >>> (63 - (index & 63))) & 1) != 0;
+	}
+
+	/**
+	 * @param index the index of the codeword
+	 * @return the 8 bits starting at bit 8 * index, the bits past the end of the
+	 *         sequence being 0
+	 */
+	public int getByte(int index) {
+		checkIndex(index * 8);
+		return (int) (words[index >>> 3] >>> (56 - ((index & 7) << 3))) & 0xFF;
+	}
+
+	/**
+	 * @param codewords receives the first count codewords of the sequence
+	 * @param count     the number of codewords to copy
+	 */
+	public void getBytes(int[] codewords, int count) {
+		for (int i = 0; i < count; i++) {
+			codewords[i] = getByte(i);
+		}
+	}
+
+	/**
+	 * @return the bits of the sequence, one boolean per bit
+	 */
+	public boolean[] toBooleanArray() {
+		boolean[] bits = new boolean[length];
+		for (int i = 0; i < length; i++) {
+			bits[i] = ((words[i >>> 6] >>> (63 - (i & 63))) & 1) != 0;
+		}
+		return bits;
+	}
+
+	/**
+	 * @return the words holding the sequence, the bits past its end being 0
+	 */
+	long[] words() {
+		return words;
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= length) {
+			throw new IndexOutOfBoundsException("Bit " + index + " out of a sequence of " + length + " bits");
+		}
+	}
+
+	private void ensureCapacity(int bits) {
+		int needed = (bits + 63) >>> 6;
+		if (needed > words.length) {
+			words = Arrays.copyOf(words, Math.max(needed, words.length * 2));
+		}
+	}
+}
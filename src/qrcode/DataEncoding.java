@@ -1,6 +1,15 @@
 package qrcode;
 
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import qrcode.MetricsListener.Stage;
+import qrcode.QRCodeInfos.CorrectionLvl;
+import qrcode.QRCodeInfos.Mode;
 import reedsolomon.ErrorCorrectionEncoding;
 
 public final class DataEncoding {
@@ -11,16 +20,150 @@ public final class DataEncoding {
 	 * @return
 	 */
 	public static boolean[] byteModeEncoding(String input, int version) {
-		int maxInputLength= QRCodeInfos.getMaxInputLength(version);
-		int CodeWordsLength=QRCodeInfos.getCodeWordsLength(version);
-		int errorCorrectionLength=QRCodeInfos.getECCLength(version);
+		return byteModeEncoding(input, version, CorrectionLvl.L);
+	}
+
+	/**
+	 * Encode the input in byte mode with the given error correction level
+	 * 
+	 * @param input   the string to encode, truncated to the capacity of the version
+	 * @param version the version of the QR code
+	 * @param level   the error correction level
+	 * @return the interleaved data and error correction bits, most significant bit
+	 *         first
+	 */
+	public static boolean[] byteModeEncoding(String input, int version, CorrectionLvl level) {
+		long start = Metrics.start();
+		int maxInputLength= QRCodeInfos.getMaxInputLength(version, level);
+		int CodeWordsLength=QRCodeInfos.getCodeWordsLength(version, level);
 		int[] encodedString=encodeString(input,maxInputLength);
-		int[] dataWithHeaders=addInformations(encodedString);
+		int[] dataWithHeaders=addInformations(encodedString, version);
 		int[] filledSequence=fillSequence(dataWithHeaders, CodeWordsLength);
-		int[] sequenceWithEC=addErrorCorrection(filledSequence, errorCorrectionLength);
+		Metrics.stop(Stage.ENCODE, start);
+		Metrics.increment(Metrics.INPUT_BYTES, encodedString.length);
+		int[] sequenceWithEC=addErrorCorrectionBlocks(filledSequence, version, level);
 		return bytesToBinaryArray(sequenceWithEC);
 	}
 
+	/**
+	 * Encode the input with the mix of numeric, alphanumeric and byte segments
+	 * that needs the fewest bits
+	 * 
+	 * @param input   the string to encode
+	 * @param version the version of the QR code
+	 * @param level   the error correction level
+	 * @return the interleaved data and error correction bits, most significant bit
+	 *         first
+	 * @throws IllegalArgumentException if the input does not fit in the version
+	 */
+	public static boolean[] mixedModeEncoding(String input, int version, CorrectionLvl level) {
+		long start = Metrics.start();
+		byte[] data = input.getBytes(StandardCharsets.ISO_8859_1);
+		List<Segment> segments = Segmentation.optimalSegments(data, version);
+		int[] encodedData = encodeSegments(data, segments, version, QRCodeInfos.getCodeWordsLength(version, level));
+		Metrics.stop(Stage.ENCODE, start);
+		Metrics.increment(Metrics.INPUT_BYTES, data.length);
+		int[] sequenceWithEC = addErrorCorrectionBlocks(encodedData, version, level);
+		return bytesToBinaryArray(sequenceWithEC);
+	}
+
+	/**
+	 * Write the segments with their headers, the terminator and the padding bytes
+	 * 
+	 * @param data            the input in ISO-8859-1
+	 * @param segments        the segments covering the input
+	 * @param version         the version of the QR code
+	 * @param codeWordsLength the number of data codewords to fill
+	 * @return the data codewords
+	 * @throws IllegalArgumentException if the segments do not fit in the codewords
+	 */
+	public static int[] encodeSegments(byte[] data, List<Segment> segments, int version, int codeWordsLength) {
+		checkCapacity(Segmentation.getBitLength(segments, version), codeWordsLength * 8, version);
+		BitBuffer bits = new BitBuffer(codeWordsLength * 8);
+		for (Segment segment : segments) {
+			writeSegment(bits, data, segment.getMode(), segment.getStart(), segment.getLength(), version);
+		}
+		terminate(bits, codeWordsLength);
+		int[] codewords = new int[codeWordsLength];
+		bits.getBytes(codewords, codeWordsLength);
+		return codewords;
+	}
+
+	/**
+	 * Same as {@link #encodeSegments(byte[], List, int, int)} with the segments of
+	 * a workspace, writing into a reusable bit buffer
+	 * 
+	 * @param data            the input in ISO-8859-1
+	 * @param segments        the segments covering the input
+	 * @param version         the version of the QR code
+	 * @param bits            an empty buffer receiving the codeWordsLength data
+	 *                        codewords
+	 * @param codeWordsLength the number of data codewords to fill
+	 * @throws IllegalArgumentException if the segments do not fit in the codewords
+	 */
+	static void encodeSegments(byte[] data, Segmentation.Workspace segments, int version, BitBuffer bits, int codeWordsLength) {
+		checkCapacity(segments.getBitLength(version), codeWordsLength * 8, version);
+		for (int s = 0; s < segments.count; s++) {
+			writeSegment(bits, data, segments.modes[s], segments.starts[s], segments.lengths[s], version);
+		}
+		terminate(bits, codeWordsLength);
+	}
+
+	private static void checkCapacity(int bits, int capacity, int version) {
+		if (bits > capacity) {
+			throw new IllegalArgumentException("The input needs " + bits + " bits but version " + version
+					+ " only holds " + capacity + " bits of data");
+		}
+	}
+
+	/**
+	 * Append the header and the characters of one segment
+	 */
+	private static void writeSegment(BitBuffer bits, byte[] data, Mode mode, int start, int length, int version) {
+		bits.append(mode.getIndicator(), 4);
+		bits.append(length, mode.getCharacterCountBits(version));
+		int end = start + length;
+		switch (mode) {
+		case NUMERIC:
+			for (int i = start; i < end; i += 3) {
+				int digits = Math.min(3, end - i);
+				int value = 0;
+				for (int j = i; j < i + digits; j++) {
+					value = value * 10 + (data[j] - '0');
+				}
+				bits.append(value, digits * 3 + 1);
+			}
+			break;
+		case ALPHANUMERIC:
+			for (int i = start; i < end; i += 2) {
+				int value = Segmentation.getAlphanumericValue(data[i]);
+				if (i + 1 < end) {
+					bits.append(value * 45 + Segmentation.getAlphanumericValue(data[i + 1]), 11);
+				} else {
+					bits.append(value, 6);
+				}
+			}
+			break;
+		default:
+			for (int i = start; i < end; i++) {
+				bits.append(data[i], 8);
+			}
+		}
+	}
+
+	/**
+	 * Append the terminator of up to 4 zeros and the zeros up to the end of the
+	 * byte, then fill the remaining codewords with the padding bytes 236,17
+	 */
+	private static void terminate(BitBuffer bits, int codeWordsLength) {
+		bits.append(0, Math.min(4, codeWordsLength * 8 - bits.length()));
+		bits.padToByte();
+		int usedCodewords = bits.length() / 8;
+		for (int i = usedCodewords; i < codeWordsLength; i++) {
+			bits.append((i - usedCodewords) % 2 == 0 ? 236 : 17, 8);
+		}
+	}
+
 	/**
 	 * @param input     The string to convert to ISO-8859-1
 	 * @param maxLength The maximal number of bytes to encode (will depend on the
@@ -56,21 +199,31 @@ public final class DataEncoding {
 	 * @return The input bytes with an header giving the type and size of the data
 	 */
 	public static int[] addInformations(int[] inputBytes) {
-		// TODO Implementer
-		byte[] resultsArray = new byte[inputBytes.length + 2];
-		// sets first 4 bits of first Byte to 0100 because 0100=4 and 0100<<4= 01000000
-		resultsArray[0] = (byte) ((byte) (4 << 4) + (byte) (inputBytes.length >> 4));
-		// set second byte which has part of the input length information in it
-		resultsArray[1] = ((byte) ((byte) (inputBytes.length << 4) + (byte) (inputBytes[0] >> 4)));
-		for (int i = 0; i < inputBytes.length; i++) {
-			if (i < (inputBytes.length - 1))
-				resultsArray[i + 2] = ((byte) ((byte) (inputBytes[i] << 4) + (byte) (inputBytes[i + 1] >> 4)));
-			else
-				resultsArray[i + 2] = ((byte) (inputBytes[i] << 4));
-		}
-		return getIntsArray(resultsArray);
+		return addInformations(inputBytes, 1);
 	}
 
+
+	/**
+	 * Add the information header for the given version: from version 10, the
+	 * length of the data is written on 16 bits instead of 8
+	 * 
+	 * @param inputBytes the data byte sequence
+	 * @param version    the version of the QR code
+	 * @return The input bytes with an header giving the type and size of the data
+	 */
+	public static int[] addInformations(int[] inputBytes, int version) {
+		int length = inputBytes.length;
+		BitBuffer bits = new BitBuffer(20 + length * 8);
+		bits.append(Mode.BYTE.getIndicator(), 4);
+		bits.append(length, Mode.BYTE.getCharacterCountBits(version));
+		bits.appendBytes(inputBytes, 0, length);
+		bits.padToByte();
+		int[] resultsArray = new int[bits.length() / 8];
+		bits.getBytes(resultsArray, resultsArray.length);
+		return resultsArray;
+	}
+
+
 	/**
 	 * Add padding bytes to the data until the size of the given array matches the
 	 * finalLength
@@ -120,6 +273,140 @@ public final class DataEncoding {
 		return encodedDataWithEC;
 	}
 
+	/**
+	 * Split the data into the error correction blocks of the version, compute the
+	 * error correction of each block and interleave the result: first the data
+	 * codewords of every block, column by column, then their error correction
+	 * codewords
+	 * 
+	 * @param encodedData the data codewords of the version
+	 * @param version     the version of the QR code
+	 * @return the interleaved codewords to place in the matrix
+	 */
+	public static int[] addErrorCorrectionBlocks(int[] encodedData, int version) {
+		return addErrorCorrectionBlocks(encodedData, version, CorrectionLvl.L);
+	}
+
+	/**
+	 * Same as {@link #addErrorCorrectionBlocks(int[], int)} with the blocks of the
+	 * given error correction level
+	 * 
+	 * @param encodedData the data codewords of the version and level
+	 * @param version     the version of the QR code
+	 * @param level       the error correction level
+	 * @return the interleaved codewords to place in the matrix
+	 */
+	public static int[] addErrorCorrectionBlocks(int[] encodedData, int version, CorrectionLvl level) {
+		int blocks = QRCodeInfos.getNumberOfBlocks(version, level);
+		int eccLength = QRCodeInfos.getECCLength(version, level);
+		int[] errorCorrection = new int[blocks * eccLength];
+		int[] result = new int[encodedData.length + errorCorrection.length];
+		addErrorCorrectionBlocks(encodedData, encodedData.length, blocks, eccLength, errorCorrection, result);
+		return result;
+	}
+
+	/**
+	 * Same as {@link #addErrorCorrectionBlocks(int[], int, CorrectionLvl)} with
+	 * reusable arrays
+	 * 
+	 * @param encodedData     the data codewords
+	 * @param dataLength      the number of data codewords
+	 * @param blocks          the number of error correction blocks
+	 * @param eccLength       the number of error correction codewords per block
+	 * @param errorCorrection receives the error correction codewords of the blocks
+	 * @param result          receives the interleaved codewords
+	 */
+	static void addErrorCorrectionBlocks(int[] encodedData, int dataLength, int blocks, int eccLength,
+			int[] errorCorrection, int[] result) {
+		long start = Metrics.start();
+		for (int block = 0; block < blocks; block++) {
+			encodeBlock(encodedData, dataLength, blocks, block, eccLength, errorCorrection);
+		}
+		interleave(encodedData, dataLength, errorCorrection, blocks, eccLength, result);
+		Metrics.stop(Stage.ECC, start);
+	}
+
+	/**
+	 * Same as {@link #addErrorCorrectionBlocks(int[], int)} but the error
+	 * correction of the blocks is computed concurrently on the given executor
+	 * 
+	 * @param encodedData the data codewords of the version
+	 * @param version     the version of the QR code
+	 * @param executor    the executor computing the blocks
+	 * @return the interleaved codewords to place in the matrix
+	 */
+	public static int[] addErrorCorrectionBlocks(int[] encodedData, int version, Executor executor) {
+		return addErrorCorrectionBlocks(encodedData, version, CorrectionLvl.L, executor);
+	}
+
+	/**
+	 * Same as {@link #addErrorCorrectionBlocks(int[], int, CorrectionLvl)} but the
+	 * error correction of the blocks is computed concurrently on the given executor
+	 * 
+	 * @param encodedData the data codewords of the version and level
+	 * @param version     the version of the QR code
+	 * @param level       the error correction level
+	 * @param executor    the executor computing the blocks
+	 * @return the interleaved codewords to place in the matrix
+	 */
+	public static int[] addErrorCorrectionBlocks(int[] encodedData, int version, CorrectionLvl level, Executor executor) {
+		int blocks = QRCodeInfos.getNumberOfBlocks(version, level);
+		int eccLength = QRCodeInfos.getECCLength(version, level);
+		long start = Metrics.start();
+		int[] errorCorrection = new int[blocks * eccLength];
+		List<CompletableFuture<Void>> tasks = new ArrayList<>(blocks);
+		for (int i = 0; i < blocks; i++) {
+			final int block = i;
+			tasks.add(CompletableFuture.runAsync(
+					() -> encodeBlock(encodedData, encodedData.length, blocks, block, eccLength, errorCorrection), executor));
+		}
+		for (CompletableFuture<Void> task : tasks) {
+			task.join();
+		}
+		int[] result = new int[encodedData.length + errorCorrection.length];
+		interleave(encodedData, encodedData.length, errorCorrection, blocks, eccLength, result);
+		Metrics.stop(Stage.ECC, start);
+		return result;
+	}
+
+	/*
+	 * The first blocks are one codeword shorter when the data codewords cannot be
+	 * split evenly
+	 */
+
+	private static int blockStart(int dataLength, int blocks, int block) {
+		int shortBlocks = blocks - dataLength % blocks;
+		int shortLength = dataLength / blocks;
+		return block * shortLength + Math.max(0, block - shortBlocks);
+	}
+
+	private static int blockLength(int dataLength, int blocks, int block) {
+		int shortBlocks = blocks - dataLength % blocks;
+		return dataLength / blocks + (block < shortBlocks ? 0 : 1);
+	}
+
+	private static void encodeBlock(int[] data, int dataLength, int blocks, int block, int eccLength, int[] errorCorrection) {
+		ErrorCorrectionEncoding.encode(data, blockStart(dataLength, blocks, block), blockLength(dataLength, blocks, block),
+				eccLength, errorCorrection, block * eccLength);
+	}
+
+	private static void interleave(int[] data, int dataLength, int[] errorCorrection, int blocks, int eccLength, int[] result) {
+		int index = 0;
+		int longest = blockLength(dataLength, blocks, blocks - 1);
+		for (int i = 0; i < longest; i++) {
+			for (int block = 0; block < blocks; block++) {
+				if (i < blockLength(dataLength, blocks, block)) {
+					result[index++] = data[blockStart(dataLength, blocks, block) + i];
+				}
+			}
+		}
+		for (int i = 0; i < eccLength; i++) {
+			for (int block = 0; block < blocks; block++) {
+				result[index++] = errorCorrection[block * eccLength + i];
+			}
+		}
+	}
+
 	/**
 	 * Encode the byte array into a binary array represented with boolean using the
 	 * most significant bit first.
@@ -128,26 +415,31 @@ public final class DataEncoding {
 	 * @return a boolean array representing the data in binary
 	 */
 	public static boolean[] bytesToBinaryArray(int[] data) {
-		boolean[] binaryArray= new boolean[data.length*8];
-		for(int i=0;i<data.length;i++) {
-			boolean[] bitsToAdd=byteToBits(data[i]);
-			for(int j=0;j<8;j++) {
-				binaryArray[i*8+j]=bitsToAdd[j];
+		boolean[] binaryArray = new boolean[data.length * 8];
+		for (int i = 0; i < data.length; i++) {
+			int value = clampByte(data[i]);
+			for (int j = 0; j < 8; j++) {
+				binaryArray[i * 8 + j] = ((value >>> (7 - j)) & 1) != 0;
 			}
 		}
 		return binaryArray;
 	}
 
 	public static boolean[] byteToBits(int data) {
+		int value = clampByte(data);
 		boolean[] bitForm = new boolean[8];
-		for (int i = 0; i<8  ;i++) {
-			if (data >= Math.pow(2, 7-i)) {
-				data -= Math.pow(2, 7-i);
-				bitForm[i] = true;
-			} else
-				bitForm[i] = false;
+		for (int i = 0; i < 8; i++) {
+			bitForm[i] = ((value >>> (7 - i)) & 1) != 0;
 		}
 		return bitForm;
 	}
 
+	/*
+	 * The values outside of a byte saturate, as with the former subtraction of the
+	 * powers of two
+	 */
+	private static int clampByte(int data) {
+		return Math.max(0, Math.min(0xFF, data));
+	}
+
 }
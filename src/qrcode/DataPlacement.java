@@ -0,0 +1,184 @@
+package qrcode;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import qrcode.MetricsListener.Stage;
+
+/**
+ * Precomputed order in which the data bits are placed in the matrix.
+ *
+ * For each version, the zig-zag walk over the two-module wide columns is done
+ * once on the function pattern template. The resulting table maps the index of
+ * a data bit to the module receiving it, encoded as <code>y * size + x</code>,
+ * and a reverse table maps a module back to its bit index.
+ */
+public final class DataPlacement {
+
+	private static final int MAX_VERSION = 40;
+
+	private static final AtomicReferenceArray<int[]> INDEXES = new AtomicReferenceArray<>(MAX_VERSION + 1);
+	private static final AtomicReferenceArray<int[]> REVERSE_INDEXES = new AtomicReferenceArray<>(MAX_VERSION + 1);
+
+	private DataPlacement() {
+	}
+
+	/**
+	 * @param version the version number of the QR code
+	 * @return the number of modules available for data (including remainder bits)
+	 */
+	public static int getDataModuleCount(int version) {
+		return index(version).length;
+	}
+
+	/**
+	 * @param version the version number of the QR code
+	 * @return a copy of the placement table: entry <code>i</code> is the module
+	 *         <code>y * size + x</code> receiving the data bit <code>i</code>
+	 */
+	public static int[] getPlacementIndex(int version) {
+		return index(version).clone();
+	}
+
+	/**
+	 * Reverse lookup of the placement table
+	 *
+	 * @param version the version number of the QR code
+	 * @param x       column of the module
+	 * @param y       row of the module
+	 * @return the index of the data bit stored in the module, or -1 for a function
+	 *         module
+	 */
+	public static int getBitIndex(int version, int x, int y) {
+		return reverseIndex(version)[y * QRCodeInfos.getMatrixSize(version) + x];
+	}
+
+	/**
+	 * Write the data bits into the data modules of the matrix in placement order.
+	 * The modules left after the last bit are set light. The bits are not masked.
+	 *
+	 * @param matrix a matrix initialized with the function patterns of its version
+	 * @param data   the data to add
+	 */
+	public static void place(QRMatrix matrix, boolean[] data) {
+		long start = Metrics.start();
+		int[] index = index(matrix.getVersion());
+		int size = matrix.getSize();
+		int wordsPerRow = matrix.getWordsPerRow();
+		long[] modules = matrix.modules();
+		int placed = Math.min(data.length, index.length);
+		for (int i = 0; i < placed; i++) {
+			int module = index[i];
+			int x = module % size;
+			int word = (module / size) * wordsPerRow + (x >>> 6);
+			modules[word] = (modules[word] & ~(1L << x)) | ((data[i] ? 1L : 0L) << x);
+		}
+		for (int i = placed; i < index.length; i++) {
+			int module = index[i];
+			int x = module % size;
+			modules[(module / size) * wordsPerRow + (x >>> 6)] &= ~(1L << x);
+		}
+		Metrics.stop(Stage.PLACEMENT, start);
+	}
+
+	/**
+	 * Same as {@link #place(QRMatrix, boolean[])} reading the bits from their
+	 * packed words
+	 *
+	 * @param matrix a matrix initialized with the function patterns of its version
+	 * @param data   the data to add
+	 */
+	public static void place(QRMatrix matrix, BitBuffer data) {
+		long start = Metrics.start();
+		int[] index = index(matrix.getVersion());
+		int size = matrix.getSize();
+		int wordsPerRow = matrix.getWordsPerRow();
+		long[] modules = matrix.modules();
+		long[] bits = data.words();
+		int placed = Math.min(data.length(), index.length);
+		for (int i = 0; i < index.length; i++) {
+			int module = index[i];
+			int x = module % size;
+			int word = (module / size) * wordsPerRow + (x >>> 6);
+			long bit = i < placed ? (bits[i >>> 6] >>> (63 - (i & 63))) & 1L : 0L;
+			modules[word] = (modules[word] & ~(1L << x)) | (bit << x);
+		}
+		Metrics.stop(Stage.PLACEMENT, start);
+	}
+
+	/**
+	 * Inverse of the placement: read the data modules of the matrix in placement
+	 * order and pack them into codewords, most significant bit first. The bits are
+	 * not unmasked.
+	 *
+	 * @param matrix    a QR code whose size gives the version
+	 * @param codewords receives the codewords, at most the number of data modules
+	 *                  divided by 8 are read
+	 */
+	public static void read(QRMatrix matrix, int[] codewords) {
+		int[] index = index(matrix.getVersion());
+		int size = matrix.getSize();
+		int wordsPerRow = matrix.getWordsPerRow();
+		long[] modules = matrix.modules();
+		int count = Math.min(codewords.length, index.length / 8);
+		for (int c = 0, i = 0; c < count; c++) {
+			int codeword = 0;
+			for (int end = i + 8; i < end; i++) {
+				int module = index[i];
+				int x = module % size;
+				codeword = (codeword << 1) | (int) ((modules[(module / size) * wordsPerRow + (x >>> 6)] >>> x) & 1L);
+			}
+			codewords[c] = codeword;
+		}
+	}
+
+	static int[] index(int version) {
+		int[] index = INDEXES.get(version);
+		if (index == null) {
+			index = buildIndex(MatrixTemplates.template(version));
+			INDEXES.compareAndSet(version, null, index);
+			index = INDEXES.get(version);
+		}
+		return index;
+	}
+
+	private static int[] reverseIndex(int version) {
+		int[] reverse = REVERSE_INDEXES.get(version);
+		if (reverse == null) {
+			int size = QRCodeInfos.getMatrixSize(version);
+			int[] index = index(version);
+			reverse = new int[size * size];
+			Arrays.fill(reverse, -1);
+			for (int i = 0; i < index.length; i++) {
+				reverse[index[i]] = i;
+			}
+			REVERSE_INDEXES.compareAndSet(version, null, reverse);
+			reverse = REVERSE_INDEXES.get(version);
+		}
+		return reverse;
+	}
+
+	/**
+	 * Walk the two-module wide columns from right to left, alternately upwards
+	 * and downwards, skipping the vertical timing pattern and the function
+	 * modules
+	 */
+	private static int[] buildIndex(QRMatrix template) {
+		int size = template.getSize();
+		int[] index = new int[size * size];
+		int count = 0;
+		for (int i = (size - 1) / 2 - 1; i >= 0; i--) {
+			int right = i * 2 + (i > 2 ? 2 : 1);
+			boolean goingUp = (i & 1) == 1;
+			for (int step = 0; step < size; step++) {
+				int y = goingUp ? size - 1 - step : step;
+				for (int x = right; x >= right - 1; x--) {
+					if (!template.isFunction(x, y)) {
+						index[count++] = y * size + x;
+					}
+				}
+			}
+		}
+		return Arrays.copyOf(index, count);
+	}
+}
@@ -0,0 +1,198 @@
+package qrcode;
+
+import java.nio.charset.StandardCharsets;
+
+import qrcode.MetricsListener.Stage;
+import qrcode.QRCodeInfos.CorrectionLvl;
+import qrcode.QRCodeInfos.Mode;
+
+/**
+ * Reusable state of the whole encoding pipeline for one version and error
+ * correction level.
+ *
+ * The input bytes, segments, bit stream, data codewords, error correction
+ * codewords, interleaved codewords and matrices are fixed-capacity buffers
+ * allocated by the constructor. Each stage writes into the buffers of the previous one, so
+ * once the caches of the version are built an encoding allocates nothing.
+ *
+ * A context is not thread-safe: use one per thread.
+ */
+public final class EncoderContext {
+
+	private static final int LEVELS = CorrectionLvl.values().length;
+
+	/*
+	 * Contexts of encodeSmallest for each thread, by version and level
+	 */
+	private static final ThreadLocal<EncoderContext[]> SMALLEST_CONTEXTS = ThreadLocal
+			.withInitial(() -> new EncoderContext[(QRCodeInfos.getMaxVersion() + 1) * LEVELS]);
+
+	private final int version;
+	private final CorrectionLvl level;
+	private final int codeWordsLength;
+	private final int blocks;
+	private final int eccLength;
+	private final int maxInputLength;
+
+	private final byte[] input;
+	private final Segmentation.Workspace segments;
+	private final BitBuffer bits;
+	private final int[] codewords;
+	private final int[] errorCorrection;
+	private final int[] interleaved;
+	private final QRMatrix placed;
+	private final QRMatrix result;
+	private final PenaltyScorer scorer = new PenaltyScorer();
+
+	private int mask = -1;
+
+	/**
+	 * @param version the version of the QR codes
+	 * @param level   the error correction level of the QR codes
+	 */
+	public EncoderContext(int version, CorrectionLvl level) {
+		this.version = version;
+		this.level = level;
+		codeWordsLength = QRCodeInfos.getCodeWordsLength(version, level);
+		blocks = QRCodeInfos.getNumberOfBlocks(version, level);
+		eccLength = QRCodeInfos.getECCLength(version, level);
+		maxInputLength = QRCodeInfos.getMaxInputLength(version, level);
+		// a digit is the cheapest character with 10 bits for 3 of them
+		int capacity = (codeWordsLength * 8 - 4 - Mode.NUMERIC.getCharacterCountBits(version)) * 3 / 10;
+		input = new byte[Math.max(capacity, maxInputLength)];
+		segments = new Segmentation.Workspace(input.length);
+		codewords = new int[codeWordsLength];
+		bits = new BitBuffer(8 * (codeWordsLength + blocks * eccLength));
+		errorCorrection = new int[blocks * eccLength];
+		interleaved = new int[codeWordsLength + errorCorrection.length];
+		placed = QRMatrix.forVersion(version);
+		result = QRMatrix.forVersion(version);
+	}
+
+	/**
+	 * Encode the input with the mix of numeric, alphanumeric and byte segments
+	 * that needs the fewest bits, and choose the mask that minimize the penalty
+	 *
+	 * @param text the string to encode, the characters outside ISO-8859-1 are
+	 *             replaced by '?'
+	 * @return the QR code, owned by the context and overwritten by the next call
+	 * @throws IllegalArgumentException if the input does not fit in the version
+	 */
+	public QRMatrix encode(CharSequence text) {
+		long start = Metrics.start();
+		int length = load(text, input.length);
+		if (length < 0) {
+			throw new IllegalArgumentException("The input has more than " + input.length
+					+ " characters, the most that version " + version + " can hold");
+		}
+		Segmentation.optimalSegments(input, length, version, segments);
+		Metrics.increment(Metrics.INPUT_BYTES, length);
+		return render(start);
+	}
+
+	/**
+	 * Encode the input in the smallest version holding it with the level, instead
+	 * of choosing the version up front. Each thread keeps the contexts of the
+	 * versions and levels it used, so only the first call of a version and level
+	 * allocates a context.
+	 *
+	 * @param text  the string to encode, in ISO-8859-1
+	 * @param level the error correction level
+	 * @return the QR code, owned by the caller
+	 * @throws IllegalArgumentException if the input has characters outside
+	 *                                  ISO-8859-1 or does not fit in any version
+	 * @see Segmentation#smallestVersion(byte[], CorrectionLvl)
+	 */
+	public static QRMatrix encodeSmallest(CharSequence text, CorrectionLvl level) {
+		String string = text.toString();
+		if (!StandardCharsets.ISO_8859_1.newEncoder().canEncode(string)) {
+			throw new IllegalArgumentException("The input has characters outside ISO-8859-1");
+		}
+		int version = Segmentation.smallestVersion(string.getBytes(StandardCharsets.ISO_8859_1), level);
+		EncoderContext[] contexts = SMALLEST_CONTEXTS.get();
+		int index = version * LEVELS + level.ordinal();
+		EncoderContext context = contexts[index];
+		if (context == null) {
+			context = new EncoderContext(version, level);
+			contexts[index] = context;
+		}
+		return context.encode(string).copy();
+	}
+
+	/**
+	 * Encode the input in byte mode like
+	 * {@link DataEncoding#byteModeEncoding(String, int, CorrectionLvl)}, and
+	 * choose the mask that minimize the penalty
+	 *
+	 * @param text the string to encode, truncated to the capacity of the version
+	 * @return the QR code, owned by the context and overwritten by the next call
+	 */
+	public QRMatrix encodeByteMode(CharSequence text) {
+		long start = Metrics.start();
+		int length = load(text, maxInputLength);
+		length = length < 0 ? maxInputLength : length;
+		segments.setSingleSegment(Mode.BYTE, length);
+		Metrics.increment(Metrics.INPUT_BYTES, length);
+		return render(start);
+	}
+
+	/**
+	 * @return the mask of the last encoded QR code, -1 before the first one
+	 */
+	public int getMask() {
+		return mask;
+	}
+
+	public int getVersion() {
+		return version;
+	}
+
+	public CorrectionLvl getLevel() {
+		return level;
+	}
+
+	/**
+	 * Run the stages following the segmentation of the input
+	 *
+	 * @param start the start time of the encoding stage
+	 */
+	private QRMatrix render(long start) {
+		bits.clear();
+		DataEncoding.encodeSegments(input, segments, version, bits, codeWordsLength);
+		bits.getBytes(codewords, codeWordsLength);
+		Metrics.stop(Stage.ENCODE, start);
+		DataEncoding.addErrorCorrectionBlocks(codewords, codeWordsLength, blocks, eccLength, errorCorrection, interleaved);
+		bits.clear();
+		bits.appendBytes(interleaved, 0, interleaved.length);
+		MatrixTemplates.reset(placed, 0, level);
+		DataPlacement.place(placed, bits);
+		mask = MatrixConstruction.applyBestMask(placed, level, result, scorer);
+		return result;
+	}
+
+	/**
+	 * Convert the text to ISO-8859-1 into the input buffer, as
+	 * {@link String#getBytes(java.nio.charset.Charset)} does
+	 *
+	 * @return the number of bytes, or -1 if the text has more than maxLength
+	 *         characters (the first maxLength ones being loaded)
+	 */
+	private int load(CharSequence text, int maxLength) {
+		int length = 0;
+		for (int i = 0; i < text.length(); i++) {
+			if (length == maxLength) {
+				return -1;
+			}
+			char c = text.charAt(i);
+			if (c > 0xFF) {
+				// a surrogate pair is a single unmappable character
+				if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+					i++;
+				}
+				c = '?';
+			}
+			input[length++] = (byte) c;
+		}
+		return length;
+	}
+}
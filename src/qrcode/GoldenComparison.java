@@ -0,0 +1,468 @@
+package qrcode;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Headless comparison of matrices with golden images: module-scale PNG files
+ * such as the ones of the images directory.
+ *
+ * The golden image is packed row by row into a dark
+ * ({@link MatrixConstruction#B}) and a light ({@link MatrixConstruction#W}) bit
+ * plane and compared 64 modules at a time, directly with the words of a
+ * {@link QRMatrix} or with the planes of an ARGB matrix. The few modules of
+ * any other color in both matrices, e.g. the 0 of a module not set yet, are
+ * then compared by value, so that the comparison is exact. A directory of
+ * golden files is compared on a pool of threads, and a diff image is written
+ * for each golden file that does not match.
+ */
+public final class GoldenComparison {
+
+	/*
+	 * Colors of the diff images
+	 */
+	static final int GREEN_BLACK = 0xFF_00_60_00;
+	static final int GREEN_WHITE = 0xFF_90_FF_90;
+	static final int RED = 0xFF_80_00_00;
+
+	private static final int DIFF_SCALE = 10;
+	private static final int DIFF_BORDER = 2;
+
+	private GoldenComparison() {
+	}
+
+	/**
+	 * Compare a matrix with a golden image
+	 *
+	 * @param matrix the matrix in ARGB form, indexed as <code>matrix[x][y]</code>
+	 * @param golden the golden PNG file
+	 * @return the number of modules that differ, or -1 if the sizes differ
+	 * @throws IOException if the golden file cannot be read
+	 */
+	public static int compare(int[][] matrix, Path golden) throws IOException {
+		return mismatches(matrix, readMatrix(golden));
+	}
+
+	/**
+	 * @param matrix the QR code in packed form
+	 * @param golden the golden PNG file
+	 * @return the number of modules that differ, or -1 if the sizes differ
+	 * @throws IOException if the golden file cannot be read
+	 */
+	public static int compare(QRMatrix matrix, Path golden) throws IOException {
+		BufferedImage image = readImage(golden);
+		int size = matrix.getSize();
+		if (image.getWidth() != size || image.getHeight() != size) {
+			return -1;
+		}
+		// the golden planes have the layout of the packed modules: every module of
+		// the matrix is dark, or light in the complement
+		long[] expected = planes(image);
+		long[] dark = matrix.modules();
+		int words = matrix.getWordsPerRow();
+		int planeLength = words * size;
+		long lastWord = (size & 63) == 0 ? -1L : (1L << size) - 1;
+		int count = 0;
+		for (int i = 0; i < planeLength; i++) {
+			long mask = i % words == words - 1 ? lastWord : -1L;
+			long differ = (expected[i] ^ dark[i]) | (expected[planeLength + i] ^ (~dark[i] & mask));
+			count += Long.bitCount(differ);
+		}
+		return count;
+	}
+
+	/**
+	 * Compare in parallel every PNG file of a directory with the matrix produced
+	 * for its name
+	 *
+	 * @param goldenDirectory the directory of the golden files
+	 * @param producer        computes the actual matrix of a golden file from its
+	 *                        name without extension, null to skip the file
+	 * @param diffDirectory   receives a <code>name.diff.png</code> image for each
+	 *                        mismatch: expected, difference and actual side by
+	 *                        side. Created if needed, null to write no image
+	 * @param threads         the number of comparisons run at the same time
+	 * @return the report of the comparisons, in the order of the file names
+	 * @throws IOException if the directory cannot be listed
+	 */
+	public static Report compareDirectory(Path goldenDirectory, Function<String, int[][]> producer, Path diffDirectory,
+			int threads) throws IOException {
+		List<Path> goldens = new ArrayList<>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(goldenDirectory, "*.png")) {
+			for (Path file : files) {
+				goldens.add(file);
+			}
+		}
+		Collections.sort(goldens);
+		if (diffDirectory != null) {
+			Files.createDirectories(diffDirectory);
+		}
+
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<Result>> futures = new ArrayList<>(goldens.size());
+			for (Path golden : goldens) {
+				futures.add(pool.submit(() -> compare(golden, producer, diffDirectory)));
+			}
+			List<Result> results = new ArrayList<>(goldens.size());
+			for (Future<Result> future : futures) {
+				Result result = future.get();
+				if (result != null) {
+					results.add(result);
+				}
+			}
+			return new Report(results);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while comparing " + goldenDirectory, e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * @return the result of one golden file, null if it is skipped
+	 */
+	private static Result compare(Path golden, Function<String, int[][]> producer, Path diffDirectory) {
+		String name = golden.getFileName().toString();
+		name = name.substring(0, name.length() - ".png".length());
+		try {
+			int[][] actual = producer.apply(name);
+			if (actual == null) {
+				return null;
+			}
+			int[][] expected = readMatrix(golden);
+			int mismatches = mismatches(actual, expected);
+			Path diffImage = null;
+			if (mismatches != 0 && diffDirectory != null) {
+				diffImage = diffDirectory.resolve(name + ".diff.png");
+				ImageIO.write(diffImage(expected, actual), "png", diffImage.toFile());
+			}
+			return new Result(name, mismatches, diffImage, null);
+		} catch (IOException | RuntimeException e) {
+			return new Result(name, -1, null, e.toString());
+		}
+	}
+
+	/**
+	 * Read a golden file with a single bulk read of its pixels
+	 *
+	 * @param golden the PNG file
+	 * @return the pixels in ARGB form, indexed as <code>matrix[x][y]</code>
+	 * @throws IOException if the file cannot be read
+	 */
+	public static int[][] readMatrix(Path golden) throws IOException {
+		return toMatrix(readImage(golden));
+	}
+
+	private static BufferedImage readImage(Path golden) throws IOException {
+		BufferedImage image = ImageIO.read(golden.toFile());
+		if (image == null) {
+			throw new IOException("Not an image: " + golden);
+		}
+		return image;
+	}
+
+	static int[][] toMatrix(BufferedImage image) {
+		int width = image.getWidth();
+		int height = image.getHeight();
+		int[] pixels = image.getRGB(0, 0, width, height, null, 0, width);
+		int[][] matrix = new int[width][height];
+		for (int x = 0; x < width; x++) {
+			int[] column = matrix[x];
+			for (int y = 0; y < height; y++) {
+				column[y] = pixels[y * width + x];
+			}
+		}
+		return matrix;
+	}
+
+	/**
+	 * @return the number of modules whose color differs, or -1 if the sizes
+	 *         differ
+	 */
+	static int mismatches(int[][] actual, int[][] expected) {
+		if (actual.length != expected.length || actual.length == 0 || actual[0].length != expected[0].length) {
+			return -1;
+		}
+		long[] actualPlanes = planes(actual);
+		long[] expectedPlanes = planes(expected);
+		int count = mismatches(actualPlanes, expectedPlanes);
+		// the modules neither dark nor light in both matrices are in no plane
+		int width = actual.length;
+		int words = (width + 63) >>> 6;
+		int planeLength = actualPlanes.length / 2;
+		long lastWord = (width & 63) == 0 ? -1L : (1L << width) - 1;
+		for (int i = 0; i < planeLength; i++) {
+			long other = ~(actualPlanes[i] | actualPlanes[planeLength + i] | expectedPlanes[i]
+					| expectedPlanes[planeLength + i]);
+			if (i % words == words - 1) {
+				other &= lastWord;
+			}
+			int y = i / words;
+			int left = (i % words) << 6;
+			while (other != 0) {
+				int x = left + Long.numberOfTrailingZeros(other);
+				if (actual[x][y] != expected[x][y]) {
+					count++;
+				}
+				other &= other - 1;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @return the number of modules whose state differs between two pairs of
+	 *         planes of the same size
+	 */
+	private static int mismatches(long[] actual, long[] expected) {
+		int planeLength = actual.length / 2;
+		int count = 0;
+		for (int i = 0; i < planeLength; i++) {
+			long differ = (actual[i] ^ expected[i]) | (actual[planeLength + i] ^ expected[planeLength + i]);
+			count += Long.bitCount(differ);
+		}
+		return count;
+	}
+
+	/**
+	 * @return the dark plane followed by the light plane, bit x of the words of
+	 *         row y being the module matrix[x][y]
+	 */
+	private static long[] planes(int[][] matrix) {
+		int width = matrix.length;
+		int height = matrix[0].length;
+		int words = (width + 63) >>> 6;
+		long[] planes = new long[2 * words * height];
+		int light = words * height;
+		for (int x = 0; x < width; x++) {
+			int[] column = matrix[x];
+			long bit = 1L << x;
+			int word = x >>> 6;
+			for (int y = 0; y < height; y++) {
+				if (column[y] == MatrixConstruction.B) {
+					planes[y * words + word] |= bit;
+				} else if (column[y] == MatrixConstruction.W) {
+					planes[light + y * words + word] |= bit;
+				}
+			}
+		}
+		return planes;
+	}
+
+	/**
+	 * Pack the pixels of a golden image row by row, with the layout of
+	 * {@link #planes(int[][])} and of the modules of a {@link QRMatrix}
+	 */
+	private static long[] planes(BufferedImage image) {
+		int width = image.getWidth();
+		int height = image.getHeight();
+		int[] pixels = image.getRGB(0, 0, width, height, null, 0, width);
+		int words = (width + 63) >>> 6;
+		long[] planes = new long[2 * words * height];
+		int light = words * height;
+		for (int y = 0; y < height; y++) {
+			int row = y * width;
+			for (int word = 0; word < words; word++) {
+				long dark = 0;
+				long lightBits = 0;
+				int end = Math.min(width, (word + 1) << 6);
+				for (int x = word << 6; x < end; x++) {
+					int color = pixels[row + x];
+					if (color == MatrixConstruction.B) {
+						dark |= 1L << x;
+					} else if (color == MatrixConstruction.W) {
+						lightBits |= 1L << x;
+					}
+				}
+				planes[y * words + word] = dark;
+				planes[light + y * words + word] = lightBits;
+			}
+		}
+		return planes;
+	}
+
+	/**
+	 * @return for each module: red if the two colors differ, otherwise dark or
+	 *         light green for a dark or light module, nothing for another one
+	 */
+	static int[][] diff(int[][] expected, int[][] actual) {
+		int[][] diff = new int[expected.length][expected[0].length];
+		for (int x = 0; x < expected.length; x++) {
+			for (int y = 0; y < expected[x].length; y++) {
+				int color = expected[x][y];
+				if (color != actual[x][y]) {
+					diff[x][y] = RED;
+				} else if (color == MatrixConstruction.W) {
+					diff[x][y] = GREEN_WHITE;
+				} else if (color == MatrixConstruction.B) {
+					diff[x][y] = GREEN_BLACK;
+				}
+			}
+		}
+		return diff;
+	}
+
+	/**
+	 * @return the expected matrix, the difference and the actual matrix side by
+	 *         side, scaled up with a transparent border. Matrices of different
+	 *         sizes are shown without the difference.
+	 */
+	private static BufferedImage diffImage(int[][] expected, int[][] actual) {
+		boolean sameSize = actual.length == expected.length && actual[0].length == expected[0].length;
+		int[][][] panels = sameSize ? new int[][][] { expected, diff(expected, actual), actual }
+				: new int[][][] { expected, actual };
+		int panelSize = 0;
+		for (int[][] panel : panels) {
+			panelSize = Math.max(panelSize, Math.max(panel.length, panel[0].length) * DIFF_SCALE);
+		}
+		panelSize += 2 * DIFF_BORDER * DIFF_SCALE;
+		int width = panelSize * panels.length;
+		BufferedImage image = new BufferedImage(width, panelSize, BufferedImage.TYPE_INT_ARGB);
+		int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		for (int p = 0; p < panels.length; p++) {
+			int[][] panel = panels[p];
+			int left = p * panelSize + DIFF_BORDER * DIFF_SCALE;
+			int top = DIFF_BORDER * DIFF_SCALE;
+			for (int x = 0; x < panel.length; x++) {
+				for (int y = 0; y < panel[x].length; y++) {
+					for (int dy = 0; dy < DIFF_SCALE; dy++) {
+						int start = (top + y * DIFF_SCALE + dy) * width + left + x * DIFF_SCALE;
+						Arrays.fill(pixels, start, start + DIFF_SCALE, panel[x][y]);
+					}
+				}
+			}
+		}
+		return image;
+	}
+
+	/**
+	 * Outcome of the comparison of one golden file
+	 */
+	public static final class Result {
+		private final String name;
+		private final int mismatches;
+		private final Path diffImage;
+		private final String error;
+
+		Result(String name, int mismatches, Path diffImage, String error) {
+			this.name = name;
+			this.mismatches = mismatches;
+			this.diffImage = diffImage;
+			this.error = error;
+		}
+
+		/**
+		 * @return the name of the golden file, without extension
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @return the number of modules that differ, -1 if the sizes differ or the
+		 *         comparison failed
+		 */
+		public int getMismatches() {
+			return mismatches;
+		}
+
+		/**
+		 * @return the diff image written, null if none was
+		 */
+		public Path getDiffImage() {
+			return diffImage;
+		}
+
+		/**
+		 * @return the error that prevented the comparison, null if there was none
+		 */
+		public String getError() {
+			return error;
+		}
+
+		public boolean isMatch() {
+			return mismatches == 0;
+		}
+
+		@Override
+		public String toString() {
+			if (error != null) {
+				return name + ": " + error;
+			}
+			if (mismatches < 0) {
+				return name + ": size differs";
+			}
+			return name + ": " + (mismatches == 0 ? "ok" : mismatches + " modules differ");
+		}
+	}
+
+	/**
+	 * Results of the comparison of a directory
+	 */
+	public static final class Report {
+		private final List<Result> results;
+
+		Report(List<Result> results) {
+			this.results = Collections.unmodifiableList(results);
+		}
+
+		/**
+		 * @return the results of the compared golden files, in the order of their
+		 *         names
+		 */
+		public List<Result> getResults() {
+			return results;
+		}
+
+		/**
+		 * @return the results that do not match
+		 */
+		public List<Result> getMismatches() {
+			List<Result> mismatches = new ArrayList<>();
+			for (Result result : results) {
+				if (!result.isMatch()) {
+					mismatches.add(result);
+				}
+			}
+			return mismatches;
+		}
+
+		/**
+		 * @return true if every compared golden file matches
+		 */
+		public boolean isSuccess() {
+			return getMismatches().isEmpty();
+		}
+
+		@Override
+		public String toString() {
+			List<Result> mismatches = getMismatches();
+			StringBuilder report = new StringBuilder();
+			report.append(results.size()).append(" golden files compared, ").append(mismatches.size())
+					.append(" mismatches").append(System.lineSeparator());
+			for (Result result : mismatches) {
+				report.append("  ").append(result).append(System.lineSeparator());
+			}
+			return report.toString();
+		}
+	}
+}
@@ -2,9 +2,15 @@ package qrcode;
 
 import java.awt.BorderLayout;
 import java.awt.Font;
+import java.awt.GraphicsEnvironment;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
 
 import javax.imageio.ImageIO;
 import javax.swing.ImageIcon;
@@ -15,6 +21,8 @@ import javax.swing.SwingConstants;
 import javax.swing.SwingUtilities;
 import javax.swing.WindowConstants;
 
+import qrcode.MetricsListener.Stage;
+
 public final class Helpers {
 	
 	//TODO modify PATH_HEADER if images do not load properly
@@ -26,13 +34,12 @@ public final class Helpers {
 	private static final int SCALE = 10;
 	private static final int BORDER = 4*SCALE; //quiet zone is 4 module large
 	
-	private static final int GREEN_BLACK = 0xFF_00_60_00;
-	private static final int GREEN_WHITE = 0xFF_90_FF_90;
-	private static final int RED = 0xFF_80_00_00;
-	
 	
 	/**
-	 * compare a matrix loaded from file with a 2D-array given in arguments.
+	 * compare a matrix loaded from file with a 2D-array given in arguments. The
+	 * colors have to be exactly equal. The differences are shown in a new window,
+	 * unless the environment is headless: see {@link GoldenComparison} for
+	 * comparisons without any window.
 	 * @param matrix the 2-dimensional array
 	 * @param imagePath the path of the image to compare with the matrix
 	 * @return true if the 2 images are similar, false otherwise
@@ -42,19 +49,22 @@ public final class Helpers {
 		if(expected.length != matrix.length || expected.length!=expected[0].length || matrix.length!=matrix[0].length) {
 			throw new IllegalArgumentException("The size of the two QR code does not match: matrix:"+matrix.length+"  image:"+expected.length);
 		}
-		int[][] diff = new int[expected.length][expected.length];
 		boolean similar = true;
+		for (int x = 0; x < matrix.length && similar; x++) {
+			similar = Arrays.equals(matrix[x], expected[x]);
+		}
+		if (similar || GraphicsEnvironment.isHeadless()) {
+			return similar;
+		}
+		int[][] diff = new int[expected.length][expected.length];
 		for(int x=0;x<matrix.length;x++) {
 			for(int y=0;y<matrix.length;y++) {
 				if(matrix[x][y]!=expected[x][y]) {
-					diff[x][y] = RED;
-					similar = false;
-				}else {
-					if(expected[x][y]== -1) {
-						diff[x][y] = GREEN_WHITE;
-					}else if(expected[x][y]== -16777216){
-						diff[x][y] = GREEN_BLACK;
-					}
+					diff[x][y] = GoldenComparison.RED;
+				}else if(expected[x][y]== MatrixConstruction.W) {
+					diff[x][y] = GoldenComparison.GREEN_WHITE;
+				}else if(expected[x][y]== MatrixConstruction.B){
+					diff[x][y] = GoldenComparison.GREEN_BLACK;
 				}
 			}
 		}
@@ -153,14 +163,39 @@ public final class Helpers {
 	}
 
 	/**
-	 * Write the matrix into an image file
+	 * Write the matrix into an image file. A black and white matrix is written as
+	 * a 1-bit grayscale image, any other as an ARGB image.
 	 * @param name
 	 *            the name of the file
 	 * @param matrix
 	 *            the matrix to write
 	 */
 	public static void writeMatrix(String name, int[][] matrix) {
-		write(name, matrixToImage(matrix));
+		try {
+			writeMatrix(new File(outputPath(name)), matrix);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Write the matrix into an image file anywhere, like
+	 * {@link #writeMatrix(String, int[][])} does in the images directory
+	 * @param file
+	 *            the file to write
+	 * @param matrix
+	 *            the matrix to write
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void writeMatrix(File file, int[][] matrix) throws IOException {
+		if (!isBlackAndWhite(matrix)) {
+			write(file, matrixToImage(matrix));
+			return;
+		}
+		try (PngWriter writer = new PngWriter();
+				OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+			writer.write(matrix, out);
+		}
 	}
 	
 	/*
@@ -179,14 +214,7 @@ public final class Helpers {
 	 * @return the matrix of the image
 	 */
 	private static int[][] imageToMatrix(BufferedImage image) {
-	
-		int[][] matrix = new int[image.getWidth()][image.getHeight()];
-		for (int i = 0; i < image.getWidth(); i++) {
-			for (int j = 0; j < image.getHeight(); j++) {
-				matrix[i][j] = image.getRGB(i, j);
-			}
-		}
-		return matrix;
+		return GoldenComparison.toMatrix(image);
 	}
 
 	/**
@@ -197,41 +225,58 @@ public final class Helpers {
 	 * @return The image of the QR code
 	 */
 	private static BufferedImage matrixToImage(int[][] matrix) {
-		BufferedImage image = new BufferedImage(matrix.length, matrix[0].length, BufferedImage.TYPE_INT_ARGB);
-		for (int x = 0; x < matrix.length; x++) {
-			for (int y = 0; y < matrix[0].length; y++) {
-				image.setRGB(x, y, matrix[x][y]);
+		long startTime = Metrics.start();
+		int width = matrix.length;
+		int height = matrix[0].length;
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		// the ARGB values are stored as is, one int per pixel in row order
+		int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		for (int x = 0; x < width; x++) {
+			int[] column = matrix[x];
+			for (int y = 0; y < height; y++) {
+				pixels[y * width + x] = column[y];
 			}
 		}
-
+		Metrics.stop(Stage.RASTER, startTime);
 		return image;
 	}
 
+
+	private static boolean isBlackAndWhite(int[][] matrix) {
+		for (int[] column : matrix) {
+			for (int color : column) {
+				if (color != MatrixConstruction.B && color != MatrixConstruction.W) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
 	/**
-	 * Write an image on a file
 	 * @param name
-	 *            the name of the file
-	 * @param image
-	 *            the image to write on disk
+	 *            the name of the file, with or without the png extension
+	 * @return the path of the file in the images directory
 	 */
-	private static void write(String name, BufferedImage image) {
-		String projectPath = System.getProperty("user.dir");
-		try {
-			// Output file path
-			String path = projectPath + SEP +  PATH_HEADER + name;
-			if (!name.contains(".png")) {
-				path = path + ".png";
-			}
-			File output_file = new File(path);
-
-			// Writing to file taking type and path as
-			ImageIO.write(image, "png", output_file);
-
-			//System.out.println("Writing complete.");
-		} catch (IOException e) {
-			e.printStackTrace();
+	private static String outputPath(String name) {
+		String path = System.getProperty("user.dir") + SEP + PATH_HEADER + name;
+		if (!name.contains(".png")) {
+			path = path + ".png";
 		}
+		return path;
+	}
 
+	/**
+	 * Write an image on a file
+	 * @param file
+	 *            the file to write
+	 * @param image
+	 *            the image to write on disk
+	 */
+	private static void write(File file, BufferedImage image) throws IOException {
+		long startTime = Metrics.start();
+		ImageIO.write(image, "png", file);
+		Metrics.stop(Stage.IO, startTime);
 	}
 
 	/**
@@ -265,43 +310,35 @@ public final class Helpers {
 		if (image.getHeight() != image.getWidth()) {
 			throw new IllegalArgumentException("The image must be squared");
 		}
+		long startTime = Metrics.start();
 		int previousSize = image.getWidth();
 		int size = previousSize * scale + borderSize * 2;
+		int[] colors = image.getRGB(0, 0, previousSize, previousSize, null, 0, previousSize);
 		BufferedImage ehancedIm = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+		int[] pixels = ((DataBufferInt) ehancedIm.getRaster().getDataBuffer()).getData();
 
 		/*
 		 * Border
 		 */
-		for (int i = 0; i < size; i++) {
-			for (int j = 0; j < borderSize; j++) {
-				ehancedIm.setRGB(i, j, BACKGROUND_COLOR);
-				ehancedIm.setRGB(i, j + size - borderSize, BACKGROUND_COLOR);
-				if (i >= borderSize && i < size - borderSize) {
-					ehancedIm.setRGB(j, i, BACKGROUND_COLOR);
-					ehancedIm.setRGB(j + size - borderSize, i, BACKGROUND_COLOR);
-				}
-			}
-		}
+		Arrays.fill(pixels, BACKGROUND_COLOR);
 
 		/*
-		 * Scaling
+		 * Scaling: the first pixel row of each module row is filled, then copied
 		 */
-		for (int x = 0; x < previousSize; x++) {
-			for (int y = 0; y < previousSize; y++) {
-
-				int color = image.getRGB(x, y);
-				int startX = x * scale + borderSize;
-				int startY = y * scale + borderSize;
-
-				for (int i = startX; i < startX + scale; i++) {
-					for (int j = startY; j < startY + scale; j++) {
-						ehancedIm.setRGB(i, j, color);
-					}
-				}
+		for (int y = 0; y < previousSize; y++) {
+			int row = (y * scale + borderSize) * size;
+			for (int x = 0; x < previousSize; x++) {
+				int start = row + x * scale + borderSize;
+				Arrays.fill(pixels, start, start + scale, colors[y * previousSize + x]);
+			}
+			for (int i = 1; i < scale; i++) {
+				System.arraycopy(pixels, row, pixels, row + i * size, size);
 			}
 		}
+		Metrics.stop(Stage.RASTER, startTime);
 
 		return ehancedIm;
 	}
 
+
 }
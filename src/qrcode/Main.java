@@ -1,30 +1,19 @@
 package qrcode;
-public class Main {
-
-	public static final String INPUT =  "nique sa mere";
 
-	/*
-	 * Parameters
-	 */
-	public static final int VERSION = 1;
-	public static final int MASK = 4;
-	public static final int SCALING = 20;
+/**
+ * Command line entry point, see {@link BatchCommand} for the options.
+ *
+ * <pre>
+ * java qrcode.Main -l M -o labels.zip labels.txt
+ * </pre>
+ */
+public class Main {
 
 	public static void main(String[] args) {
-
-		/*
-		 * Encoding
-		 */
-		boolean[] encodedData = DataEncoding.byteModeEncoding(INPUT, VERSION);
-		
-		/*
-		 * image
-		 */
-		int[][] qrCode = MatrixConstruction.renderQRCodeMatrix(VERSION, encodedData);
-		/*
-		 * Visualization
-		 */
-		Helpers.show(qrCode, SCALING);
+		int status = BatchCommand.run(args, System.in, System.out, System.err);
+		if (status != BatchCommand.SUCCESS) {
+			System.exit(status);
+		}
 	}
 
 }
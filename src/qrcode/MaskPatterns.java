@@ -0,0 +1,70 @@
+package qrcode;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Precomputed mask bitplanes.
+ *
+ * For each version and mask, the plane has the layout of the words of a
+ * {@link QRMatrix} and a bit set on every data module that the mask inverts.
+ * Function modules are never set, so a mask is applied (or removed) by XOR-ing
+ * the plane into the matrix word by word.
+ */
+public final class MaskPatterns {
+
+	private static final int MAX_VERSION = 40;
+	private static final int MASK_COUNT = 8;
+
+	private static final AtomicReferenceArray<long[]> PLANES = new AtomicReferenceArray<>((MAX_VERSION + 1) * MASK_COUNT);
+
+	private MaskPatterns() {
+	}
+
+	/**
+	 * Invert the data modules selected by the mask. Applying the same mask twice
+	 * restores the matrix. Does nothing if the mask id is not valid.
+	 *
+	 * @param matrix a matrix whose function modules match the template of its
+	 *               version
+	 * @param mask   the mask id, between 0 and 7
+	 */
+	public static void apply(QRMatrix matrix, int mask) {
+		if (mask < 0 || mask >= MASK_COUNT) {
+			return;
+		}
+		long[] plane = plane(matrix.getVersion(), mask);
+		long[] modules = matrix.modules();
+		for (int i = 0; i < plane.length; i++) {
+			modules[i] ^= plane[i];
+		}
+	}
+
+	/**
+	 * @param version the version number of the QR code
+	 * @param mask    the mask id, between 0 and 7
+	 * @return the shared plane of the mask, must not be modified
+	 */
+	static long[] plane(int version, int mask) {
+		int key = version * MASK_COUNT + mask;
+		long[] plane = PLANES.get(key);
+		if (plane == null) {
+			plane = buildPlane(version, mask);
+			PLANES.compareAndSet(key, null, plane);
+			plane = PLANES.get(key);
+		}
+		return plane;
+	}
+
+	private static long[] buildPlane(int version, int mask) {
+		QRMatrix template = MatrixTemplates.template(version);
+		QRMatrix plane = new QRMatrix(template.getSize());
+		for (int y = 0; y < template.getSize(); y++) {
+			for (int x = 0; x < template.getSize(); x++) {
+				if (!template.isFunction(x, y) && MatrixConstruction.maskColor(x, y, false, mask) == MatrixConstruction.B) {
+					plane.setDark(x, y, true);
+				}
+			}
+		}
+		return plane.modules();
+	}
+}
@@ -1,7 +1,15 @@
 package qrcode;
 
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import qrcode.MetricsListener.Stage;
+import qrcode.QRCodeInfos.CorrectionLvl;
 
 public class MatrixConstruction {
 
@@ -16,6 +24,9 @@ public class MatrixConstruction {
 	 */
 	static int W = 0xFF_FF_FF_FF;
 	static int B = (255 << 24);
+
+	private static final Set<Integer> FINDER_WHITE_SQUARES = Collections.singleton(3);
+	private static final Set<Integer> ALIGNMENT_WHITE_SQUARES = Collections.singleton(2);
 	// ... MYDEBUGCOLOR = ...;
 	// feel free to add your own colors for debugging purposes
 
@@ -29,16 +40,54 @@ public class MatrixConstruction {
 	 * @return The matrix of the QR code
 	 */
 	public static int[][] renderQRCodeMatrix(int version, boolean[] data, int mask) {
+		return renderQRCodeMatrix(version, data, mask, CorrectionLvl.L);
+	}
+
+	/**
+	 * Create the matrix of a QR code with the given data encoded with the given
+	 * error correction level.
+	 * 
+	 * @param version The version of the QR code
+	 * @param data    The data to be written on the QR code
+	 * @param mask    The mask used on the data, between 0 and 7
+	 * @param level   The error correction level used to encode the data
+	 * @return The matrix of the QR code
+	 */
+	public static int[][] renderQRCodeMatrix(int version, boolean[] data, int mask, CorrectionLvl level) {
+		return renderPackedQRCode(version, data, mask, level).toArray();
+	}
 
+	/**
+	 * Create the packed matrix of a QR code with the given data.
+	 * 
+	 * @param version The version of the QR code
+	 * @param data    The data to be written on the QR code
+	 * @param mask    The mask used on the data, between 0 and 7
+	 * @return The matrix of the QR code
+	 */
+	public static QRMatrix renderPackedQRCode(int version, boolean[] data, int mask) {
+		return renderPackedQRCode(version, data, mask, CorrectionLvl.L);
+	}
+
+	/**
+	 * Create the packed matrix of a QR code with the given data.
+	 * 
+	 * @param version The version of the QR code
+	 * @param data    The data to be written on the QR code
+	 * @param mask    The mask used on the data, between 0 and 7
+	 * @param level   The error correction level used to encode the data
+	 * @return The matrix of the QR code
+	 */
+	public static QRMatrix renderPackedQRCode(int version, boolean[] data, int mask, CorrectionLvl level) {
 		/*
 		 * PART 2
 		 */
-		int[][] matrix = constructMatrix(version, mask);
+		QRMatrix matrix = MatrixTemplates.newMatrix(version, mask, level);
 		/*
 		 * PART 3
 		 */
-		addDataInformation(matrix, data, mask);
-		System.out.println("Penalty points " + evaluate(matrix));
+		DataPlacement.place(matrix, data);
+		MaskPatterns.apply(matrix, mask);
 		return matrix;
 	}
 
@@ -53,7 +102,7 @@ public class MatrixConstruction {
 	/**
 	 * Create a matrix (2D array) ready to accept data for a given version and mask
 	 * 
-	 * @param version the version number of QR code (has to be between 1 and 4
+	 * @param version the version number of QR code (has to be between 1 and 40
 	 *                included)
 	 * @param mask    the mask id to use to mask the data modules. Has to be between
 	 *                0 and 7 included to have a valid matrix. If the mask id is not
@@ -63,12 +112,23 @@ public class MatrixConstruction {
 	 *         initialized. The modules where the data should be remain empty.
 	 */
 	public static int[][] constructMatrix(int version, int mask) {
-		int[][] matrix = initializeMatrix(version);
-		MatrixConstruction.addFinderPatterns(matrix);
-		MatrixConstruction.addAlignmentPatterns(matrix, version);
-		MatrixConstruction.addTimingPatterns(matrix);
-		MatrixConstruction.addDarkModule(matrix);
-		MatrixConstruction.addFormatInformation(matrix, mask);
+		return constructMatrix(version, mask, CorrectionLvl.L);
+	}
+
+	/**
+	 * Create a matrix (2D array) ready to accept data for a given version, mask and
+	 * error correction level
+	 * 
+	 * @param version the version number of QR code (has to be between 1 and 40
+	 *                included)
+	 * @param mask    the mask id to use to mask the data modules, between 0 and 7
+	 * @param level   the error correction level written in the format information
+	 * @return the qrcode with the patterns and format information modules
+	 *         initialized. The modules where the data should be remain empty.
+	 */
+	public static int[][] constructMatrix(int version, int mask, CorrectionLvl level) {
+		int[][] matrix = MatrixTemplates.newArray(version);
+		MatrixConstruction.addFormatInformation(matrix, mask, level);
 		return matrix;
 	}
 
@@ -76,7 +136,7 @@ public class MatrixConstruction {
 	 * Create an empty 2d array of integers of the size needed for a QR code of the
 	 * given version
 	 * 
-	 * @param version the version number of the qr code (has to be between 1 and 4
+	 * @param version the version number of the qr code (has to be between 1 and 40
 	 *                included
 	 * @return an empty matrix
 	 */
@@ -92,12 +152,10 @@ public class MatrixConstruction {
 	 */
 	public static void addFinderPatterns(int[][] matrix) {
 		int numSquaresInSinglePattern = 4;
-		Set<Integer> whiteSquares = new HashSet<Integer>();
-		whiteSquares.add(3);
 
-		matrix = AddSquares(matrix, 3, 3, numSquaresInSinglePattern, whiteSquares);
-		matrix = AddSquares(matrix, 3, matrix.length - 4, numSquaresInSinglePattern, whiteSquares);
-		matrix = AddSquares(matrix, matrix.length - 4, 3, numSquaresInSinglePattern, whiteSquares);
+		matrix = AddSquares(matrix, 3, 3, numSquaresInSinglePattern, FINDER_WHITE_SQUARES);
+		matrix = AddSquares(matrix, 3, matrix.length - 4, numSquaresInSinglePattern, FINDER_WHITE_SQUARES);
+		matrix = AddSquares(matrix, matrix.length - 4, 3, numSquaresInSinglePattern, FINDER_WHITE_SQUARES);
 		matrix = addSeparator(matrix, 3, 3, false, true);
 		matrix = addSeparator(matrix, 3, matrix.length - 4, true, true);
 		matrix = addSeparator(matrix, matrix.length - 4, 3, false, false);
@@ -155,17 +213,23 @@ public class MatrixConstruction {
 	}
 
 	/**
-	 * Add the alignment pattern if needed, does nothing for version 1
+	 * Add the alignment patterns if needed, does nothing for version 1
 	 * 
 	 * @param matrix  The 2D array to modify
-	 * @param version the version number of the QR code needs to be between 1 and 4
+	 * @param version the version number of the QR code needs to be between 1 and 40
 	 *                included
 	 */
 	public static void addAlignmentPatterns(int[][] matrix, int version) {
-		Set<Integer> whiteSquares = new HashSet<Integer>();
-		whiteSquares.add(2);
-		if (version > 1)
-			matrix = AddSquares(matrix, matrix.length - 7, matrix.length - 7, 3, whiteSquares);
+		int[] positions = QRCodeInfos.getAlignmentPatternPositions(version);
+		int last = positions.length - 1;
+		for (int i = 0; i < positions.length; i++) {
+			for (int j = 0; j < positions.length; j++) {
+				// skip the corners of the finder patterns
+				if ((i == 0 && j == 0) || (i == 0 && j == last) || (i == last && j == 0))
+					continue;
+				matrix = AddSquares(matrix, positions[i], positions[j], 3, ALIGNMENT_WHITE_SQUARES);
+			}
+		}
 	}
 
 	/**
@@ -181,6 +245,27 @@ public class MatrixConstruction {
 		}
 	}
 
+	/**
+	 * Add the two blocks of version information, needed from version 7. Does
+	 * nothing for smaller versions.
+	 * 
+	 * @param matrix  the 2-dimensional array representing the QR code
+	 * @param version the version number of the QR code
+	 */
+	public static void addVersionInformation(int[][] matrix, int version) {
+		if (version < 7)
+			return;
+		int information = QRCodeInfos.getVersionInformation(version);
+		for (int i = 0; i < 18; i++) {
+			int color = ((information >> i) & 1) == 1 ? B : W;
+			int a = matrix.length - 11 + i % 3;
+			int b = i / 3;
+			// top right and bottom left blocks
+			matrix[a][b] = color;
+			matrix[b][a] = color;
+		}
+	}
+
 	/**
 	 * Add the dark module to the matrix
 	 * 
@@ -197,21 +282,95 @@ public class MatrixConstruction {
 	 * @param mask   the mask id
 	 */
 	public static void addFormatInformation(int[][] matrix, int mask) {
-		boolean[] formatSequence = QRCodeInfos.getFormatSequence(mask);
-		int xOffSet = 0;
-		int yOffSet = 0;
+		addFormatInformation(matrix, mask, CorrectionLvl.L);
+	}
+
+	/**
+	 * Add the format information of the given mask and error correction level to
+	 * the matrix
+	 * 
+	 * @param matrix the 2-dimensional array representing the QR code to modify
+	 * @param mask   the mask id
+	 * @param level  the error correction level
+	 */
+	public static void addFormatInformation(int[][] matrix, int mask, CorrectionLvl level) {
+		int format = QRCodeInfos.getFormatWord(mask, level);
+		int size = matrix.length;
 		for (int i = 0; i < 15; i++) {
-			if (i == 6)
-				xOffSet = 1;
-			if (i == 7) {
-				yOffSet = 16 - matrix.length;
-				xOffSet = 1 + -yOffSet;
-			}
-			if (i == 9)
-				yOffSet -= 1;
-			matrix[8][matrix.length - 1 - i + yOffSet] = formatSequence[i] ? B : W;
-			matrix[i + xOffSet][8] = formatSequence[i] ? B : W;
+			int color = ((format >> (14 - i)) & 1) == 1 ? B : W;
+			matrix[8][formatColumnY(size, i)] = color;
+			matrix[formatRowX(size, i)][8] = color;
+		}
+	}
+
+	/**
+	 * Add the format information to a packed matrix, the modules are marked as
+	 * function modules
+	 * 
+	 * @param matrix the packed QR code to modify
+	 * @param mask   the mask id
+	 */
+	public static void addFormatInformation(QRMatrix matrix, int mask) {
+		addFormatInformation(matrix, mask, CorrectionLvl.L);
+	}
+
+	/**
+	 * Add the format information of the given mask and error correction level to a
+	 * packed matrix, the modules are marked as function modules
+	 * 
+	 * @param matrix the packed QR code to modify
+	 * @param mask   the mask id
+	 * @param level  the error correction level
+	 */
+	public static void addFormatInformation(QRMatrix matrix, int mask, CorrectionLvl level) {
+		int format = QRCodeInfos.getFormatWord(mask, level);
+		int size = matrix.getSize();
+		for (int i = 0; i < 15; i++) {
+			boolean dark = ((format >> (14 - i)) & 1) == 1;
+			matrix.setFunction(8, formatColumnY(size, i), dark);
+			matrix.setFunction(formatRowX(size, i), 8, dark);
+		}
+	}
+
+	/**
+	 * Read one of the two copies of the format information of a packed matrix
+	 * 
+	 * @param matrix the packed QR code
+	 * @param copy   0 for the copy along the column 8, 1 for the copy along the
+	 *               row 8
+	 * @return the 15 bits of format information, the bit 14 being the first
+	 *         module of the sequence
+	 */
+	public static int readFormatInformation(QRMatrix matrix, int copy) {
+		int size = matrix.getSize();
+		int format = 0;
+		for (int i = 0; i < 15; i++) {
+			boolean dark = copy == 0 ? matrix.isDark(8, formatColumnY(size, i)) : matrix.isDark(formatRowX(size, i), 8);
+			format = (format << 1) | (dark ? 1 : 0);
 		}
+		return format;
+	}
+
+	/*
+	 * Position of the i-th format bit: the first copy goes up the column 8 from
+	 * the bottom left finder pattern then around the top left one, the second goes
+	 * along the row 8 from the top left finder pattern to the top right one
+	 */
+
+	static int formatColumnY(int size, int i) {
+		if (i < 7)
+			return size - 1 - i;
+		if (i < 9)
+			return 15 - i;
+		return 14 - i;
+	}
+
+	static int formatRowX(int size, int i) {
+		if (i < 6)
+			return i;
+		if (i < 7)
+			return 7;
+		return size - 15 + i;
 	}
 
 	/*
@@ -229,7 +388,7 @@ public class MatrixConstruction {
 	 * @return the color with the masking
 	 */
 	public static int maskColor(int col, int row, boolean dataBit, int masking) {
-		if (masking < 0 && masking > 7)
+		if (masking < 0 || masking > 7)
 			return (dataBit ? B : W);
 		boolean mask = false;
 		switch (masking) {
@@ -246,7 +405,7 @@ public class MatrixConstruction {
 			mask = ((row + col) % 3 == 0);
 			break;
 		case 4:
-			mask = ((Math.floor(row / 2) + Math.floor(col / 3)) % 2 == 0);
+			mask = ((row / 2 + col / 3) % 2 == 0);
 			break;
 		case 5:
 			mask = ((row * col) % 2 + (row * col) % 3) == 0;
@@ -270,34 +429,25 @@ public class MatrixConstruction {
 	 * @param data   the data to add
 	 */
 	public static void addDataInformation(int[][] matrix, boolean[] data, int mask) {
-		// number of 2 wide columns
-		int numberOfColumns = (matrix.length - 1) / 2;
+		long start = Metrics.start();
+		int size = matrix.length;
 		int dataIndex = 0;
-		for (int i = numberOfColumns - 1; i >= 0; i--) {
-			boolean goingUp = true;
-			if (i % 2 == 0)
-				goingUp = false;
-			for (int j = 0; j < matrix.length * 2; j++) {
-				int moduleX = (i * 2);
-				int moduleY = (int) Math.floor(j / 2);
-				int xOffset = (j % 2 == 0) ? 1 : 0;
-				if (i > 2)
-					xOffset += 1;
-				moduleX += xOffset;
-				if (goingUp)
-					moduleY = matrix.length - moduleY - 1;
-				if (moduleX == 10 && moduleY == 14) {
-				}
-				if (matrix[moduleX][moduleY] == 0) {
-
-					boolean dataBit = false;
-					if (dataIndex < data.length)
-						dataBit = data[dataIndex];
-					matrix[moduleX][moduleY] = maskColor(moduleX, moduleY, dataBit, mask);
-					dataIndex += 1;
+		// 2 wide columns from right to left, the vertical timing pattern is skipped
+		for (int i = (size - 1) / 2 - 1; i >= 0; i--) {
+			int right = i * 2 + (i > 2 ? 2 : 1);
+			boolean goingUp = (i & 1) == 1;
+			for (int step = 0; step < size; step++) {
+				int y = goingUp ? size - 1 - step : step;
+				for (int x = right; x >= right - 1; x--) {
+					if (matrix[x][y] == 0) {
+						boolean dataBit = dataIndex < data.length && data[dataIndex];
+						matrix[x][y] = maskColor(x, y, dataBit, mask);
+						dataIndex++;
+					}
 				}
 			}
 		}
+		Metrics.stop(Stage.PLACEMENT, start);
 	}
 
 	/*
@@ -324,6 +474,20 @@ public class MatrixConstruction {
 		return renderQRCodeMatrix(version, data, mask);
 	}
 
+	/**
+	 * Create the matrix of a QR code with the given data encoded with the given
+	 * error correction level, using the mask that provides the least penalty
+	 * 
+	 * @param version The version of the QR code
+	 * @param data    The data to be written on the QR code
+	 * @param level   The error correction level used to encode the data
+	 * @return The matrix of the QR code
+	 */
+	public static int[][] renderQRCodeMatrix(int version, boolean[] data, CorrectionLvl level) {
+		int mask = findBestMasking(version, data, level);
+		return renderQRCodeMatrix(version, data, mask, level);
+	}
+
 	/**
 	 * Find the best mask to apply to a QRcode so that the penalty score is
 	 * minimized. Compute the penalty score with evaluate
@@ -332,169 +496,165 @@ public class MatrixConstruction {
 	 * @return the mask number that minimize the penalty
 	 */
 	public static int findBestMasking(int version, boolean[] data) {
-		int minPenalty = 0;
-		int minPenaltyIndex = 0;
+		return findBestMasking(version, data, CorrectionLvl.L);
+	}
+
+	/**
+	 * Find the best mask for a QR code encoded with the given error correction
+	 * level, the level being part of the format information that is scored
+	 * 
+	 * @param version The version of the QR code
+	 * @param data    The data to be written on the QR code
+	 * @param level   The error correction level used to encode the data
+	 * @return the mask number that minimize the penalty
+	 */
+	public static int findBestMasking(int version, boolean[] data, CorrectionLvl level) {
+		long start = Metrics.start();
+		int[] penalties = new int[8];
 		for (int i = 0; i < 8; i++) {
-			int[][] matrix = constructMatrix(version, i);
-			addDataInformation(matrix, data, i);
-			int penalty = evaluate(matrix);
-			if (i==0 || penalty < minPenalty) {
-				minPenaltyIndex = i;
-				minPenalty=penalty;
-			}
+			penalties[i] = maskPenalty(version, data, i, level);
 		}
-		System.out.println(minPenaltyIndex);
-		System.out.println(minPenalty);
-		return minPenaltyIndex;
+		int mask = selectBestMask(penalties);
+		Metrics.stop(Stage.MASK_SEARCH, start);
+		return mask;
 	}
 
 	/**
-	 * Compute the penalty score of a matrix
+	 * Same as {@link #findBestMasking(int, boolean[])} but the eight candidates are
+	 * built and scored concurrently on the common fork-join pool
 	 * 
-	 * @param matrix: the QR code in matrix form
-	 * @return the penalty score obtained by the QR code, lower the better
+	 * @param version The version of the QR code
+	 * @param data    The data to be written on the QR code
+	 * @return the mask number that minimize the penalty, the lowest one on a tie
 	 */
-	public static int evaluate(int[][] matrix) {
-		int penaltyPoints = 0;
-		int SameInARow = 0;
-		int SameInACol = 0;
-		int lastBitInRow = 0;
-		int lastBitInCol = 0;
-		int[] searchPattern = { W, W, W, W, B, W, B, B, B, W, B, W };
-		int[] rSearchPattern = { W, B, W, B, B, B, W, B, W, W, W, W };
-		int rowPatternIndex = 0;
-		int colPatternIndex = 0;
-		int rRowPatternIndex = 0;
-		int rColPatternIndex = 0;
-		int numBlackModules = 0;
-		int patternPenaltyPoints = 0;
-		// add penalties for vertical and horizontal runs of the same color
-		for (int i = 0; i < matrix.length; i++) {
-
-			for (int j = 0; j < matrix.length; j++) {
-				if (matrix[i][j] == B)
-					numBlackModules += 1;
-				if (j == 0) {
-					lastBitInRow = matrix[j][i];
-					lastBitInCol = matrix[i][j];
-					SameInARow = 1;
-					SameInACol = 1;
-				}
-				// CHECKS FOR RUNS OF SAME COLOR
-				// ---------------------------------------------------
-				if (j != 0 && matrix[j][i] == lastBitInRow) {
-					SameInARow++;
-				} else {
-					SameInARow = 1;
-				}
-				if (j != 0 && matrix[i][j] == lastBitInCol) {
-					SameInACol++;
-				} else {
-					SameInACol = 1;
-				}
-				penaltyPoints += getPenaltyPointsForSequence(SameInACol);
-				penaltyPoints += getPenaltyPointsForSequence(SameInARow);
-				lastBitInRow = matrix[j][i];
-				lastBitInCol = matrix[i][j];
-				// END CHECK FOR RUNS OF THE SAME COLOR
-			}
+	public static int findBestMaskingParallel(int version, boolean[] data) {
+		return findBestMasking(version, data, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Same as {@link #findBestMasking(int, boolean[])} but the eight candidates are
+	 * built and scored concurrently on the given executor. The result does not
+	 * depend on the order in which the candidates complete.
+	 * 
+	 * @param version  The version of the QR code
+	 * @param data     The data to be written on the QR code
+	 * @param executor the executor running the candidates
+	 * @return the mask number that minimize the penalty, the lowest one on a tie
+	 */
+	public static int findBestMasking(int version, boolean[] data, Executor executor) {
+		return findBestMasking(version, data, CorrectionLvl.L, executor);
+	}
+
+	/**
+	 * Same as {@link #findBestMasking(int, boolean[], CorrectionLvl)} but the eight
+	 * candidates are built and scored concurrently on the given executor
+	 * 
+	 * @param version  The version of the QR code
+	 * @param data     The data to be written on the QR code
+	 * @param level    The error correction level used to encode the data
+	 * @param executor the executor running the candidates
+	 * @return the mask number that minimize the penalty, the lowest one on a tie
+	 */
+	public static int findBestMasking(int version, boolean[] data, CorrectionLvl level, Executor executor) {
+		long start = Metrics.start();
+		List<CompletableFuture<Integer>> candidates = new ArrayList<>(8);
+		for (int i = 0; i < 8; i++) {
+			final int mask = i;
+			candidates.add(CompletableFuture.supplyAsync(() -> maskPenalty(version, data, mask, level), executor));
 		}
-		// adds the penalties for any pattern of {W,W,W,W,B,W,B,B,B,W,B} or the reverse
-		int rowColor = W;
-		int colColor = B;
-		for (int i = 0; i < matrix.length + 2; i++) {
-			for (int j = 0; j < matrix.length + 2; j++) {
-				if (j == 0) {
-					rowPatternIndex = 0;
-					rRowPatternIndex = 0;
-					colPatternIndex = 0;
-					rColPatternIndex = 0;
-				}
-				// ADDS BORDER OF WHITE
-				if (j == 0 || j == matrix.length + 1 || i == 0 || i == matrix.length + 1) {
-					rowColor = W;
-					colColor = W;
-				} else {
-					rowColor = matrix[j - 1][i - 1];
-					colColor = matrix[i - 1][j - 1];
-				}
-				// END OF ADDING WHITE BORDER
-				rowPatternIndex = changePatternIndex(searchPattern, rowPatternIndex, rowColor);
-				rRowPatternIndex = changePatternIndex(rSearchPattern, rRowPatternIndex, rowColor);
-				colPatternIndex = changePatternIndex(searchPattern, colPatternIndex, colColor);
-				rColPatternIndex = changePatternIndex(rSearchPattern, rColPatternIndex, colColor);
-
-				patternPenaltyPoints += getPenaltyPointsForPattern(rowPatternIndex);
-				patternPenaltyPoints += getPenaltyPointsForPattern(rRowPatternIndex);
-				patternPenaltyPoints += getPenaltyPointsForPattern(colPatternIndex);
-				patternPenaltyPoints += getPenaltyPointsForPattern(rColPatternIndex);
-				if (rowPatternIndex == 12) {
-					rowPatternIndex = 0;
-				}
-				if (rRowPatternIndex == 12) {
-					rRowPatternIndex = 0;
-				}
-				if (colPatternIndex == 12) {
-					colPatternIndex = 0;
-				}
-				if (rColPatternIndex == 12) {
-					rColPatternIndex = 0;
-				}
-			}
+		int[] penalties = new int[8];
+		for (int i = 0; i < 8; i++) {
+			penalties[i] = candidates.get(i).join();
 		}
-		penaltyPoints += patternPenaltyPoints;
-		// add penalties for 2x2 boxes of the same color
-		for (int i = 0; i < matrix.length - 1; i++) {
-			for (int j = 0; j < matrix.length - 1; j++) {
-				int color11 = matrix[j][i];
-				int color12 = matrix[j][i + 1];
-				int color21 = matrix[j + 1][i];
-				int color22 = matrix[j + 1][i + 1];
-				if ((color11 == color12) && (color11 == color21) && (color11 == color22)) {
-					penaltyPoints += 3;
-				}
+		int mask = selectBestMask(penalties);
+		Metrics.stop(Stage.MASK_SEARCH, start);
+		return mask;
+	}
+
+	/**
+	 * Build the QR code with the mask that minimize the penalty, reusing
+	 * caller-owned matrices and scorer instead of allocating one matrix per
+	 * candidate
+	 * 
+	 * @param data      The data to be written on the QR code
+	 * @param level     The error correction level used to encode the data
+	 * @param candidate scratch matrix of the version, overwritten
+	 * @param result    matrix of the version receiving the best candidate
+	 * @param scorer    the scorer used to evaluate the candidates
+	 * @return the mask number that minimize the penalty, the lowest one on a tie
+	 */
+	public static int renderBestMask(boolean[] data, CorrectionLvl level, QRMatrix candidate, QRMatrix result,
+			PenaltyScorer scorer) {
+		MatrixTemplates.reset(candidate, 0, level);
+		DataPlacement.place(candidate, data);
+		return applyBestMask(candidate, level, result, scorer);
+	}
+
+	/**
+	 * Try the eight masks on a matrix holding the unmasked data and copy the one
+	 * that minimize the penalty into the result. The data modules of the matrix
+	 * are left unmasked on return, its format information is the one of the last
+	 * mask tried.
+	 * 
+	 * @param placed the matrix with the function patterns and the unmasked data
+	 * @param level  The error correction level used to encode the data
+	 * @param result matrix of the version receiving the best candidate
+	 * @param scorer the scorer used to evaluate the candidates
+	 * @return the mask number that minimize the penalty, the lowest one on a tie
+	 */
+	public static int applyBestMask(QRMatrix placed, CorrectionLvl level, QRMatrix result, PenaltyScorer scorer) {
+		long start = Metrics.start();
+		int minPenalty = Integer.MAX_VALUE;
+		int minPenaltyIndex = 0;
+		for (int mask = 0; mask < 8; mask++) {
+			addFormatInformation(placed, mask, level);
+			MaskPatterns.apply(placed, mask);
+			int penalty = scorer.score(placed);
+			if (penalty < minPenalty) {
+				minPenalty = penalty;
+				minPenaltyIndex = mask;
+				result.copyFrom(placed);
 			}
+			// the masks are involutions
+			MaskPatterns.apply(placed, mask);
 		}
-		// add penalty points for uneven distribution of colors
-		float percentage = (float) (100f * (numBlackModules / Math.pow(matrix.length, 2)));
-		int multipleOfFive = 0;
-		while (percentage >= 0) {
-			percentage -= 5;
-			multipleOfFive++;
-		}
-		if (multipleOfFive > 10)
-			multipleOfFive--;
-		int penaltyMultiplier = Math.abs(multipleOfFive - 10);
-		penaltyPoints += penaltyMultiplier * 10;
-		return penaltyPoints;
-	}
-
-	private static int changePatternIndex(int[] pattern, int currentSearchIndex, int moduleColor) {
-		if (moduleColor == pattern[currentSearchIndex]) {
-			return ++currentSearchIndex;
-		} else if (pattern[3] == W && currentSearchIndex == 4) {
-			return currentSearchIndex;
-		} else
-			return 0;
-	}
-
-	private static int getPenaltyPointsForSequence(int inARow) {
-		if (inARow < 5) {
-			return 0;
-		} else {
-			if (inARow == 5) {
-				return 3;
-			} else {
-				return 1;
+		Metrics.stop(Stage.MASK_SEARCH, start);
+		Metrics.maskChosen(minPenaltyIndex, minPenalty);
+		return minPenaltyIndex;
+	}
+
+
+	/**
+	 * Build the matrix for the given mask and compute its penalty score
+	 */
+	private static int maskPenalty(int version, boolean[] data, int mask, CorrectionLvl level) {
+		return PenaltyScorer.evaluate(renderPackedQRCode(version, data, mask, level));
+	}
+
+	/**
+	 * @param penalties the penalty score of each mask, indexed by mask number
+	 * @return the mask with the lowest penalty, the lowest index on a tie
+	 */
+	private static int selectBestMask(int[] penalties) {
+		int minPenaltyIndex = 0;
+		for (int i = 1; i < penalties.length; i++) {
+			if (penalties[i] < penalties[minPenaltyIndex]) {
+				minPenaltyIndex = i;
 			}
 		}
+		Metrics.maskChosen(minPenaltyIndex, penalties[minPenaltyIndex]);
+		return minPenaltyIndex;
 	}
 
-	private static int getPenaltyPointsForPattern(int patternIndex) {
-		if (patternIndex == 12) {
-			return 40;
-		}
-		return 0;
+	/**
+	 * Compute the penalty score of a matrix
+	 * 
+	 * @param matrix: the QR code in matrix form
+	 * @return the penalty score obtained by the QR code, lower the better
+	 * @see PenaltyScorer
+	 */
+	public static int evaluate(int[][] matrix) {
+		return PenaltyScorer.evaluate(QRMatrix.fromArray(matrix));
 	}
 
 }
@@ -0,0 +1,123 @@
+package qrcode;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import qrcode.MetricsListener.Stage;
+import qrcode.QRCodeInfos.CorrectionLvl;
+
+/**
+ * Cache of the function patterns of each version.
+ *
+ * The finder patterns, separators, alignment patterns, timing patterns, dark
+ * module and version information only depend on the version, so they are
+ * drawn once per version and every new matrix is a copy of that template on
+ * which only the format information of the mask is stamped.
+ */
+public final class MatrixTemplates {
+
+	private static final int MAX_VERSION = 40;
+
+	/*
+	 * Templates in ARGB form (without format information) and in packed form
+	 * (with the format modules reserved as function modules)
+	 */
+	private static final AtomicReferenceArray<int[][]> ARRAY_TEMPLATES = new AtomicReferenceArray<>(MAX_VERSION + 1);
+	private static final AtomicReferenceArray<QRMatrix> PACKED_TEMPLATES = new AtomicReferenceArray<>(MAX_VERSION + 1);
+
+	private MatrixTemplates() {
+	}
+
+	/**
+	 * Create a packed matrix holding the function patterns of the version and the
+	 * format information of the mask
+	 *
+	 * @param version the version number of the QR code
+	 * @param mask    the mask id, between 0 and 7
+	 * @return a new matrix ready to accept data
+	 */
+	public static QRMatrix newMatrix(int version, int mask) {
+		return newMatrix(version, mask, CorrectionLvl.L);
+	}
+
+	/**
+	 * Create a packed matrix holding the function patterns of the version and the
+	 * format information of the mask and error correction level
+	 *
+	 * @param version the version number of the QR code
+	 * @param mask    the mask id, between 0 and 7
+	 * @param level   the error correction level
+	 * @return a new matrix ready to accept data
+	 */
+	public static QRMatrix newMatrix(int version, int mask, CorrectionLvl level) {
+		long start = Metrics.start();
+		QRMatrix matrix = template(version).copy();
+		MatrixConstruction.addFormatInformation(matrix, mask, level);
+		Metrics.stop(Stage.TEMPLATE, start);
+		return matrix;
+	}
+
+	/**
+	 * Overwrite the given matrix with the function patterns of its version and the
+	 * format information of the mask and level. Allows a matrix to be reused from one symbol
+	 * to the next.
+	 *
+	 * @param matrix the matrix to reset
+	 * @param mask   the mask id, between 0 and 7
+	 * @param level  the error correction level
+	 */
+	public static void reset(QRMatrix matrix, int mask, CorrectionLvl level) {
+		long start = Metrics.start();
+		matrix.copyFrom(template(matrix.getVersion()));
+		MatrixConstruction.addFormatInformation(matrix, mask, level);
+		Metrics.stop(Stage.TEMPLATE, start);
+	}
+
+	/**
+	 * Create a matrix in ARGB form holding the function patterns of the version.
+	 * The format information and data modules are left empty.
+	 *
+	 * @param version the version number of the QR code
+	 * @return a new matrix, independent of the cached template
+	 */
+	public static int[][] newArray(int version) {
+		long start = Metrics.start();
+		int[][] template = arrayTemplate(version);
+		int[][] matrix = new int[template.length][];
+		for (int i = 0; i < template.length; i++) {
+			matrix[i] = template[i].clone();
+		}
+		Metrics.stop(Stage.TEMPLATE, start);
+		return matrix;
+	}
+
+	/**
+	 * @param version the version number of the QR code
+	 * @return the shared packed template of the version, must not be modified
+	 */
+	static QRMatrix template(int version) {
+		QRMatrix template = PACKED_TEMPLATES.get(version);
+		if (template == null) {
+			template = QRMatrix.fromArray(arrayTemplate(version));
+			// reserve the format modules, their color is overwritten for each mask
+			MatrixConstruction.addFormatInformation(template, 0);
+			PACKED_TEMPLATES.compareAndSet(version, null, template);
+			template = PACKED_TEMPLATES.get(version);
+		}
+		return template;
+	}
+
+	private static int[][] arrayTemplate(int version) {
+		int[][] template = ARRAY_TEMPLATES.get(version);
+		if (template == null) {
+			template = MatrixConstruction.initializeMatrix(version);
+			MatrixConstruction.addFinderPatterns(template);
+			MatrixConstruction.addAlignmentPatterns(template, version);
+			MatrixConstruction.addTimingPatterns(template);
+			MatrixConstruction.addDarkModule(template);
+			MatrixConstruction.addVersionInformation(template, version);
+			ARRAY_TEMPLATES.compareAndSet(version, null, template);
+			template = ARRAY_TEMPLATES.get(version);
+		}
+		return template;
+	}
+}
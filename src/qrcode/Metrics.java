@@ -0,0 +1,69 @@
+package qrcode;
+
+import qrcode.MetricsListener.Stage;
+
+/**
+ * Process-wide access point of the encoder metrics.
+ *
+ * The encoder reports to the installed {@link MetricsListener}. With the
+ * default {@link MetricsListener#NOOP} listener the clock is not even read, so
+ * the instrumentation costs one volatile read per stage.
+ */
+public final class Metrics {
+
+	/** Number of symbols whose mask has been chosen */
+	public static final String SYMBOLS = "symbols";
+	/** Number of input bytes encoded */
+	public static final String INPUT_BYTES = "input.bytes";
+
+	private static volatile MetricsListener listener = MetricsListener.NOOP;
+
+	private Metrics() {
+	}
+
+	/**
+	 * @param newListener the listener receiving the measurements, or null to
+	 *                    stop recording
+	 */
+	public static void setListener(MetricsListener newListener) {
+		listener = newListener == null ? MetricsListener.NOOP : newListener;
+	}
+
+	/**
+	 * @return the installed listener, {@link MetricsListener#NOOP} by default
+	 */
+	public static MetricsListener getListener() {
+		return listener;
+	}
+
+	/**
+	 * @return the start time of a stage, or 0 if nothing is recorded
+	 */
+	static long start() {
+		return listener == MetricsListener.NOOP ? 0 : System.nanoTime();
+	}
+
+	/**
+	 * Report the end of a stage started with {@link #start()}
+	 */
+	static void stop(Stage stage, long start) {
+		if (start != 0) {
+			listener.stageCompleted(stage, System.nanoTime() - start);
+		}
+	}
+
+	static void maskChosen(int mask, int penalty) {
+		MetricsListener current = listener;
+		if (current != MetricsListener.NOOP) {
+			current.maskChosen(mask, penalty);
+			current.increment(SYMBOLS, 1);
+		}
+	}
+
+	static void increment(String counter, long delta) {
+		MetricsListener current = listener;
+		if (current != MetricsListener.NOOP) {
+			current.increment(counter, delta);
+		}
+	}
+}
@@ -0,0 +1,60 @@
+package qrcode;
+
+/**
+ * Receiver of the measurements of the encoder, see {@link Metrics}.
+ *
+ * Every method has an empty default so that a listener only implements what it
+ * records. The methods are called from the encoding threads and must be
+ * thread-safe and cheap.
+ */
+public interface MetricsListener {
+
+	/**
+	 * The stages of the pipeline. A stage may contain others: the mask search of
+	 * {@link MatrixConstruction#findBestMasking(int, boolean[])} includes the
+	 * templates and placements of its eight candidates.
+	 */
+	enum Stage {
+		/** conversion of the input into data codewords */
+		ENCODE,
+		/** error correction of the blocks and interleaving */
+		ECC,
+		/** copy of the function patterns of a version */
+		TEMPLATE,
+		/** placement of the data bits in the matrix */
+		PLACEMENT,
+		/** choice of the mask with the lowest penalty */
+		MASK_SEARCH,
+		/** conversion of a matrix to an image */
+		RASTER,
+		/** writing of an image or document */
+		IO
+	}
+
+	/**
+	 * Listener recording nothing, installed by default
+	 */
+	MetricsListener NOOP = new MetricsListener() {
+	};
+
+	/**
+	 * @param stage the completed stage
+	 * @param nanos its duration in nanoseconds
+	 */
+	default void stageCompleted(Stage stage, long nanos) {
+	}
+
+	/**
+	 * @param mask    the mask chosen for a symbol
+	 * @param penalty the penalty score of the symbol with that mask
+	 */
+	default void maskChosen(int mask, int penalty) {
+	}
+
+	/**
+	 * @param counter the name of the counter
+	 * @param delta   the amount to add
+	 */
+	default void increment(String counter, long delta) {
+	}
+}
@@ -0,0 +1,103 @@
+package qrcode;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Listener keeping a latency histogram per stage, the counters, the number of
+ * times each mask was chosen and the distribution of the penalty scores.
+ *
+ * <pre>
+ * MetricsRecorder recorder = new MetricsRecorder();
+ * Metrics.setListener(recorder);
+ * ...
+ * System.err.println(recorder.report());
+ * </pre>
+ */
+public final class MetricsRecorder implements MetricsListener {
+
+	private final Map<Stage, Histogram> stages = new EnumMap<>(Stage.class);
+	private final AtomicLongArray masks = new AtomicLongArray(8);
+	private final Histogram penalties = new Histogram();
+	private final ConcurrentHashMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+	public MetricsRecorder() {
+		for (Stage stage : Stage.values()) {
+			stages.put(stage, new Histogram());
+		}
+	}
+
+	@Override
+	public void stageCompleted(Stage stage, long nanos) {
+		stages.get(stage).record(nanos);
+	}
+
+	@Override
+	public void maskChosen(int mask, int penalty) {
+		masks.incrementAndGet(mask);
+		penalties.record(penalty);
+	}
+
+	@Override
+	public void increment(String counter, long delta) {
+		counters.computeIfAbsent(counter, name -> new LongAdder()).add(delta);
+	}
+
+	/**
+	 * @param stage a stage of the pipeline
+	 * @return the durations of the stage, in nanoseconds
+	 */
+	public Histogram getLatencies(Stage stage) {
+		return stages.get(stage);
+	}
+
+	/**
+	 * @return the penalty scores of the chosen masks
+	 */
+	public Histogram getPenalties() {
+		return penalties;
+	}
+
+	/**
+	 * @param mask the mask id, between 0 and 7
+	 * @return the number of symbols that use the mask
+	 */
+	public long getMaskCount(int mask) {
+		return masks.get(mask);
+	}
+
+	/**
+	 * @param counter the name of the counter
+	 * @return its value, 0 if it was never incremented
+	 */
+	public long getCounter(String counter) {
+		LongAdder adder = counters.get(counter);
+		return adder == null ? 0 : adder.sum();
+	}
+
+	/**
+	 * @return a multi-line summary of the recorded metrics
+	 */
+	public String report() {
+		StringBuilder report = new StringBuilder();
+		for (Stage stage : Stage.values()) {
+			Histogram latencies = stages.get(stage);
+			if (latencies.getCount() > 0) {
+				report.append(String.format("%-12s %s (ns)%n", stage, latencies));
+			}
+		}
+		report.append("masks       ");
+		for (int mask = 0; mask < 8; mask++) {
+			report.append(' ').append(mask).append('=').append(masks.get(mask));
+		}
+		report.append(String.format("%npenalties    %s%n", penalties));
+		for (Map.Entry<String, LongAdder> counter : new TreeMap<>(counters).entrySet()) {
+			report.append(String.format("%-12s %d%n", counter.getKey(), counter.getValue().sum()));
+		}
+		return report.toString();
+	}
+}
@@ -0,0 +1,269 @@
+package qrcode;
+
+import java.util.Arrays;
+
+/**
+ * Penalty scoring of a packed QR code matrix.
+ *
+ * The four rules are computed in a single pass over the rows of the matrix and
+ * of its transpose, 64 modules at a time:
+ * <ul>
+ * <li>N1: runs of 5 or more modules of the same color in a row or column (3
+ * points for 5 modules, 1 more point for each additional module)</li>
+ * <li>N2: 2x2 blocks of the same color (3 points each)</li>
+ * <li>N3: the patterns {W,W,W,W,B,W,B,B,B,W,B,W} and {W,B,W,B,B,B,W,B,W,W,W,W}
+ * in a row or column, the matrix being surrounded by a border of one light
+ * module (40 points each)</li>
+ * <li>N4: deviation of the proportion of dark modules from 50% (10 points for
+ * each step of 5%)</li>
+ * </ul>
+ *
+ * An instance keeps its scratch buffers between calls and is not thread-safe.
+ */
+public final class PenaltyScorer {
+
+	/*
+	 * The searched patterns, bit k being the module k of the sequence
+	 */
+	private static final long FINDER_PATTERN = 0b0101_1101_0000L;
+	private static final long REVERSED_FINDER_PATTERN = 0b0000_1011_1010L;
+	private static final int PATTERN_LENGTH = 12;
+
+	private int n1;
+	private int n2;
+	private int n3;
+	private int n4;
+
+	private int size = -1;
+	private long[] columns;
+	private long[] equal;
+	private long[] uniform;
+	private long[] line;
+	private long[] finder;
+	private long[] reversedFinder;
+
+	/**
+	 * Compute the penalty score of a matrix with a new scorer
+	 *
+	 * @param matrix the QR code in packed form
+	 * @return the penalty score obtained by the QR code, lower the better
+	 */
+	public static int evaluate(QRMatrix matrix) {
+		return new PenaltyScorer().score(matrix);
+	}
+
+	/**
+	 * Compute the penalty score of a matrix. The breakdown per rule is available
+	 * through the getters until the next call.
+	 *
+	 * @param matrix the QR code in packed form
+	 * @return the penalty score obtained by the QR code, lower the better
+	 */
+	public int score(QRMatrix matrix) {
+		prepare(matrix.getSize());
+		int n = matrix.getSize();
+		int words = matrix.getWordsPerRow();
+		long[] rows = matrix.modules();
+		transpose(rows, n, words);
+
+		int runs = 0;
+		int patterns = 0;
+		int blocks = 0;
+		int dark = 0;
+		for (int i = 0; i < n; i++) {
+			int offset = i * words;
+			runs += runPenalty(rows, offset, n, words) + runPenalty(columns, offset, n, words);
+			patterns += patternCount(rows, offset, n, words) + patternCount(columns, offset, n, words);
+			if (i < n - 1) {
+				blocks += blockCount(rows, offset, n, words);
+			}
+			for (int w = 0; w < words; w++) {
+				dark += Long.bitCount(rows[offset + w]);
+			}
+		}
+
+		int fifth = 20 * dark / (n * n);
+		n1 = runs;
+		n2 = 3 * blocks;
+		n3 = 40 * patterns;
+		n4 = 10 * (fifth < 10 ? 9 - fifth : fifth - 10);
+		return getTotal();
+	}
+
+	/**
+	 * @return the points given by the runs of modules of the same color (N1)
+	 */
+	public int getRunPenalty() {
+		return n1;
+	}
+
+	/**
+	 * @return the points given by the 2x2 blocks of the same color (N2)
+	 */
+	public int getBlockPenalty() {
+		return n2;
+	}
+
+	/**
+	 * @return the points given by the finder-like patterns (N3)
+	 */
+	public int getFinderPenalty() {
+		return n3;
+	}
+
+	/**
+	 * @return the points given by the proportion of dark modules (N4)
+	 */
+	public int getBalancePenalty() {
+		return n4;
+	}
+
+	/**
+	 * @return the total penalty of the last scored matrix
+	 */
+	public int getTotal() {
+		return n1 + n2 + n3 + n4;
+	}
+
+	private void prepare(int n) {
+		if (n == size) {
+			return;
+		}
+		int words = (n + 63) >>> 6;
+		// the lines with the light border are 2 modules longer
+		int lineWords = (n + 2 + 63) >>> 6;
+		size = n;
+		columns = new long[n * words];
+		equal = new long[words];
+		uniform = new long[words];
+		line = new long[lineWords];
+		finder = new long[lineWords];
+		reversedFinder = new long[lineWords];
+	}
+
+	private void transpose(long[] rows, int n, int words) {
+		Arrays.fill(columns, 0L);
+		for (int y = 0; y < n; y++) {
+			long bit = 1L << y;
+			int columnWord = y >>> 6;
+			for (int w = 0; w < words; w++) {
+				long word = rows[y * words + w];
+				while (word != 0) {
+					int x = (w << 6) + Long.numberOfTrailingZeros(word);
+					columns[x * words + columnWord] |= bit;
+					word &= word - 1;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Runs penalty of one line: a run of length L >= 5 contains L - 4 uniform
+	 * windows of 5 modules and is worth L - 2 = (L - 4) + 2 points
+	 */
+	private int runPenalty(long[] lines, int offset, int n, int words) {
+		// equal bit i: modules i and i + 1 have the same color
+		for (int w = 0; w < words; w++) {
+			long current = lines[offset + w];
+			long next = shiftedWord(lines, offset, words, w, 1);
+			equal[w] = ~(current ^ next);
+		}
+		clearFrom(equal, n - 1);
+		// uniform bit i: modules i to i + 2 have the same color
+		for (int w = 0; w < words; w++) {
+			uniform[w] = equal[w] & shiftedWord(equal, 0, words, w, 1);
+		}
+		// equal bit i: modules i to i + 4 have the same color
+		for (int w = 0; w < words; w++) {
+			equal[w] = uniform[w] & shiftedWord(uniform, 0, words, w, 2);
+		}
+		int windows = 0;
+		int runs = 0;
+		long carry = 0;
+		for (int w = 0; w < words; w++) {
+			long word = equal[w];
+			windows += Long.bitCount(word);
+			runs += Long.bitCount(word & ~((word << 1) | carry));
+			carry = word >>> 63;
+		}
+		return windows + 2 * runs;
+	}
+
+	/**
+	 * Number of 2x2 blocks of the same color having their top left module on the
+	 * given row
+	 */
+	private int blockCount(long[] rows, int offset, int n, int words) {
+		// uniform bit x: modules x of both rows have the same color
+		for (int w = 0; w < words; w++) {
+			uniform[w] = ~(rows[offset + w] ^ rows[offset + words + w]);
+		}
+		clearFrom(uniform, n);
+		int count = 0;
+		for (int w = 0; w < words; w++) {
+			long horizontal = ~(rows[offset + w] ^ shiftedWord(rows, offset, words, w, 1));
+			count += Long.bitCount(uniform[w] & shiftedWord(uniform, 0, words, w, 1) & horizontal);
+		}
+		return count;
+	}
+
+	/**
+	 * Number of occurrences of the two patterns in one line surrounded by one
+	 * light module on each side
+	 */
+	private int patternCount(long[] lines, int offset, int n, int words) {
+		int lineWords = line.length;
+		long carry = 0;
+		for (int w = 0; w < lineWords; w++) {
+			long word = w < words ? lines[offset + w] : 0;
+			line[w] = (word << 1) | carry;
+			carry = word >>> 63;
+		}
+		Arrays.fill(finder, -1L);
+		Arrays.fill(reversedFinder, -1L);
+		for (int k = 0; k < PATTERN_LENGTH; k++) {
+			boolean darkInFinder = ((FINDER_PATTERN >>> k) & 1) != 0;
+			boolean darkInReversed = ((REVERSED_FINDER_PATTERN >>> k) & 1) != 0;
+			for (int w = 0; w < lineWords; w++) {
+				long module = shiftedWord(line, 0, lineWords, w, k);
+				finder[w] &= darkInFinder ? module : ~module;
+				reversedFinder[w] &= darkInReversed ? module : ~module;
+			}
+		}
+		int starts = n + 2 - PATTERN_LENGTH + 1;
+		clearFrom(finder, starts);
+		clearFrom(reversedFinder, starts);
+		int count = 0;
+		for (int w = 0; w < lineWords; w++) {
+			count += Long.bitCount(finder[w]) + Long.bitCount(reversedFinder[w]);
+		}
+		return count;
+	}
+
+	/**
+	 * @return the word w of the line shifted towards the lower bits by the given
+	 *         amount (0 to 63)
+	 */
+	private static long shiftedWord(long[] lines, int offset, int words, int w, int shift) {
+		long word = lines[offset + w];
+		if (shift == 0) {
+			return word;
+		}
+		long next = w + 1 < words ? lines[offset + w + 1] : 0;
+		return (word >>> shift) | (next << (64 - shift));
+	}
+
+	/**
+	 * Clear every bit from the given position to the end of the words
+	 */
+	private static void clearFrom(long[] words, int position) {
+		for (int w = 0; w < words.length; w++) {
+			int low = w << 6;
+			if (position <= low) {
+				words[w] = 0;
+			} else if (position < low + 64) {
+				words[w] &= (1L << (position - low)) - 1;
+			}
+		}
+	}
+}
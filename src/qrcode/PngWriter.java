@@ -0,0 +1,267 @@
+package qrcode;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import qrcode.MetricsListener.Stage;
+
+/**
+ * Minimal PNG encoder for QR codes.
+ *
+ * The image is written as 1-bit or 8-bit grayscale, scanline by scanline: each
+ * module row is expanded once with the scale and the quiet zone, then fed to
+ * the compressor as many times as the scale, so the full resolution image is
+ * never held in memory. The compressed data is cut into IDAT chunks as the
+ * output buffer fills.
+ *
+ * A writer reuses its {@link Deflater} and buffers from one image to the next
+ * and is not thread-safe. It must be closed to release the native memory of the
+ * compressor.
+ */
+public final class PngWriter implements AutoCloseable {
+
+	private static final byte[] SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+	private static final byte[] IHDR = { 'I', 'H', 'D', 'R' };
+	private static final byte[] IDAT = { 'I', 'D', 'A', 'T' };
+	private static final byte[] IEND = { 'I', 'E', 'N', 'D' };
+
+	private static final int CHUNK_SIZE = 1 << 15;
+	private static final int GRAYSCALE = 0;
+
+	/**
+	 * Source of the gray level (0 for black, 255 for white) of the modules of a row
+	 */
+	private interface RowSource {
+		void read(int y, int[] gray);
+	}
+
+	private final int scale;
+	private final int border;
+	private final int bitDepth;
+
+	private final Deflater deflater;
+	private final CRC32 crc = new CRC32();
+	private final byte[] chunk = new byte[CHUNK_SIZE];
+	private final byte[] header = new byte[8];
+	private int chunkLength;
+
+	private int[] gray = new int[0];
+	private byte[] scanline = new byte[0];
+
+	/**
+	 * Writer of 1-bit images with one pixel per module and no quiet zone
+	 */
+	public PngWriter() {
+		this(1, 0, 1, Deflater.DEFAULT_COMPRESSION);
+	}
+
+	/**
+	 * @param scale            the number of pixels per module side
+	 * @param border           the width of the quiet zone, in modules
+	 * @param bitDepth         1 for black and white images, 8 for 256 gray levels
+	 * @param compressionLevel the deflate level, between 0 and 9 or
+	 *                         {@link Deflater#DEFAULT_COMPRESSION}
+	 */
+	public PngWriter(int scale, int border, int bitDepth, int compressionLevel) {
+		if (scale < 1 || border < 0) {
+			throw new IllegalArgumentException("The scale must be positive and the border not negative");
+		}
+		if (bitDepth != 1 && bitDepth != 8) {
+			throw new IllegalArgumentException("The bit depth has to be 1 or 8");
+		}
+		this.scale = scale;
+		this.border = border;
+		this.bitDepth = bitDepth;
+		this.deflater = new Deflater(compressionLevel);
+	}
+
+	/**
+	 * Write a QR code as a PNG image
+	 *
+	 * @param matrix the QR code in packed form
+	 * @param out    the stream receiving the image, not closed
+	 * @throws IOException if the stream fails
+	 */
+	public void write(QRMatrix matrix, OutputStream out) throws IOException {
+		int size = matrix.getSize();
+		write(size, size, (y, gray) -> {
+			for (int x = 0; x < size; x++) {
+				gray[x] = matrix.isDark(x, y) ? 0 : 0xFF;
+			}
+		}, out);
+	}
+
+	/**
+	 * Write a QR code as a PNG image
+	 *
+	 * @param matrix  the QR code in packed form
+	 * @param channel the channel receiving the image, not closed
+	 * @throws IOException if the channel fails
+	 */
+	public void write(QRMatrix matrix, WritableByteChannel channel) throws IOException {
+		write(matrix, Channels.newOutputStream(channel));
+	}
+
+	/**
+	 * Write a matrix of ARGB colors as a PNG image. The colors are converted to
+	 * their luminance, and to black or white for 1-bit images.
+	 *
+	 * @param matrix the colors, <code>matrix[x][y]</code> being the module of
+	 *               column x and row y
+	 * @param out    the stream receiving the image, not closed
+	 * @throws IOException if the stream fails
+	 */
+	public void write(int[][] matrix, OutputStream out) throws IOException {
+		write(matrix.length, matrix[0].length, (y, gray) -> {
+			for (int x = 0; x < matrix.length; x++) {
+				gray[x] = luminance(matrix[x][y]);
+			}
+		}, out);
+	}
+
+	/**
+	 * Write a matrix of ARGB colors as a PNG image
+	 *
+	 * @param matrix  the colors, <code>matrix[x][y]</code> being the module of
+	 *                column x and row y
+	 * @param channel the channel receiving the image, not closed
+	 * @throws IOException if the channel fails
+	 */
+	public void write(int[][] matrix, WritableByteChannel channel) throws IOException {
+		write(matrix, Channels.newOutputStream(channel));
+	}
+
+	@Override
+	public void close() {
+		deflater.end();
+	}
+
+	private void write(int columns, int rows, RowSource source, OutputStream out) throws IOException {
+		long start = Metrics.start();
+		int width = (columns + 2 * border) * scale;
+		int height = (rows + 2 * border) * scale;
+		int lineLength = 1 + (width * bitDepth + 7) / 8;
+		if (gray.length < columns) {
+			gray = new int[columns];
+		}
+		if (scanline.length != lineLength) {
+			scanline = new byte[lineLength];
+		}
+
+		out.write(SIGNATURE);
+		chunkLength = 0;
+		putInt(width);
+		putInt(height);
+		chunk[chunkLength++] = (byte) bitDepth;
+		chunk[chunkLength++] = GRAYSCALE;
+		// deflate compression, adaptive filtering, no interlace
+		chunk[chunkLength++] = 0;
+		chunk[chunkLength++] = 0;
+		chunk[chunkLength++] = 0;
+		writeChunk(out, IHDR);
+
+		deflater.reset();
+		// filter type 0 (none), the repeated rows are left to the compressor
+		scanline[0] = 0;
+		Arrays.fill(scanline, 1, lineLength, (byte) 0xFF);
+		for (int i = 0; i < border * scale; i++) {
+			deflate(out);
+		}
+		for (int y = 0; y < rows; y++) {
+			source.read(y, gray);
+			fillScanline(columns, width);
+			for (int i = 0; i < scale; i++) {
+				deflate(out);
+			}
+		}
+		Arrays.fill(scanline, 1, lineLength, (byte) 0xFF);
+		for (int i = 0; i < border * scale; i++) {
+			deflate(out);
+		}
+		deflater.finish();
+		while (!deflater.finished()) {
+			drain(out);
+		}
+		if (chunkLength > 0) {
+			writeChunk(out, IDAT);
+		}
+		writeChunk(out, IEND);
+		out.flush();
+		Metrics.stop(Stage.IO, start);
+	}
+
+	private void fillScanline(int columns, int width) {
+		int left = border * scale;
+		if (bitDepth == 8) {
+			Arrays.fill(scanline, 1, 1 + left, (byte) 0xFF);
+			Arrays.fill(scanline, 1 + width - left, 1 + width, (byte) 0xFF);
+			for (int x = 0; x < columns; x++) {
+				int start = 1 + left + x * scale;
+				Arrays.fill(scanline, start, start + scale, (byte) gray[x]);
+			}
+			return;
+		}
+		Arrays.fill(scanline, 1, scanline.length, (byte) 0xFF);
+		for (int x = 0; x < columns; x++) {
+			if (gray[x] >= 0x80) {
+				continue;
+			}
+			// clear the bits of the dark pixels, the first pixel being the highest bit
+			int start = left + x * scale;
+			for (int p = start; p < start + scale; p++) {
+				scanline[1 + (p >>> 3)] &= ~(0x80 >>> (p & 7));
+			}
+		}
+	}
+
+	private void deflate(OutputStream out) throws IOException {
+		deflater.setInput(scanline);
+		while (!deflater.needsInput()) {
+			drain(out);
+		}
+	}
+
+	private void drain(OutputStream out) throws IOException {
+		chunkLength += deflater.deflate(chunk, chunkLength, CHUNK_SIZE - chunkLength);
+		if (chunkLength == CHUNK_SIZE) {
+			writeChunk(out, IDAT);
+		}
+	}
+
+	private void writeChunk(OutputStream out, byte[] type) throws IOException {
+		crc.reset();
+		crc.update(type);
+		crc.update(chunk, 0, chunkLength);
+		setInt(header, 0, chunkLength);
+		System.arraycopy(type, 0, header, 4, 4);
+		out.write(header);
+		out.write(chunk, 0, chunkLength);
+		setInt(header, 0, (int) crc.getValue());
+		out.write(header, 0, 4);
+		chunkLength = 0;
+	}
+
+	private void putInt(int value) {
+		setInt(chunk, chunkLength, value);
+		chunkLength += 4;
+	}
+
+	private static void setInt(byte[] bytes, int offset, int value) {
+		bytes[offset] = (byte) (value >>> 24);
+		bytes[offset + 1] = (byte) (value >>> 16);
+		bytes[offset + 2] = (byte) (value >>> 8);
+		bytes[offset + 3] = (byte) value;
+	}
+
+	private static int luminance(int argb) {
+		int r = (argb >>> 16) & 0xFF;
+		int g = (argb >>> 8) & 0xFF;
+		int b = argb & 0xFF;
+		return (r * 299 + g * 587 + b * 114) / 1000;
+	}
+}
@@ -5,17 +5,119 @@ public final class QRCodeInfos {
 	private static final int MATRIX_SIZE_VERSION_1 =21;
 	private static final int MATRIX_SIZE_STEP =4;
 	
-	private final static int[] VERSION_CODE_WORDS = { 19, 34, 55, 80 };
-	
-	private static final int[] LVL_CODE = {1,0,3,2};
+	private static final int MAX_VERSION = 40;
 	
 	public enum CorrectionLvl{
 		L,M,Q,H
 	}
 	
-	private static final int[] ERROR_CORRECTION_CODEWORDS = {7,10,15,20};
+	/**
+	 * Encoding modes of the data segments, with their 4 bits mode indicator and the
+	 * number of bits of their character count for versions 1-9, 10-26 and 27-40
+	 */
+	public enum Mode{
+		NUMERIC(0b0001, 10, 12, 14),
+		ALPHANUMERIC(0b0010, 9, 11, 13),
+		BYTE(0b0100, 8, 16, 16);
+		
+		private final int indicator;
+		private final int[] countBits;
+		
+		private Mode(int indicator, int... countBits) {
+			this.indicator = indicator;
+			this.countBits = countBits;
+		}
+		
+		/**
+		 * @return the 4 bits mode indicator
+		 */
+		public int getIndicator() {
+			return indicator;
+		}
+		
+		/**
+		 * @param version version of the QRcode
+		 * @return the number of bits of the character count
+		 */
+		public int getCharacterCountBits(int version) {
+			return countBits[version < 10 ? 0 : version < 27 ? 1 : 2];
+		}
+	}
+	
+	/*
+	 * Error correction codewords per block and number of blocks for each
+	 * correction level (in the order of CorrectionLvl) and version (index 0 is
+	 * unused)
+	 */
+	private static final int[][] ERROR_CORRECTION_CODEWORDS = {
+			{ -1, 7, 10, 15, 20, 26, 18, 20, 24, 30, 18, 20, 24, 26, 30, 22, 24, 28, 30, 28, 28,
+					28, 28, 30, 30, 26, 28, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30 },
+			{ -1, 10, 16, 26, 18, 24, 16, 18, 22, 22, 26, 30, 22, 22, 24, 24, 28, 28, 26, 26, 26,
+					26, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28 },
+			{ -1, 13, 22, 18, 26, 18, 24, 18, 22, 20, 24, 28, 26, 24, 20, 30, 24, 28, 28, 26, 30,
+					28, 30, 30, 30, 30, 28, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30 },
+			{ -1, 17, 28, 22, 16, 22, 28, 26, 26, 24, 28, 24, 28, 22, 24, 24, 30, 28, 28, 26, 28,
+					30, 24, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30 } };
+	private static final int[][] ERROR_CORRECTION_BLOCKS = {
+			{ -1, 1, 1, 1, 1, 1, 2, 2, 2, 2, 4, 4, 4, 4, 4, 6, 6, 6, 6, 7, 8,
+					8, 9, 9, 10, 12, 12, 12, 13, 14, 15, 16, 17, 18, 19, 19, 20, 21, 22, 24, 25 },
+			{ -1, 1, 1, 1, 2, 2, 4, 4, 4, 5, 5, 5, 8, 9, 9, 10, 10, 11, 13, 14, 16,
+					17, 17, 18, 20, 21, 23, 25, 26, 28, 29, 31, 33, 35, 37, 38, 40, 43, 45, 47, 49 },
+			{ -1, 1, 1, 2, 2, 4, 4, 6, 6, 8, 8, 8, 10, 12, 16, 12, 17, 16, 18, 21, 20,
+					23, 23, 25, 27, 29, 34, 34, 35, 38, 40, 43, 45, 48, 51, 53, 56, 59, 62, 65, 68 },
+			{ -1, 1, 1, 2, 4, 4, 4, 5, 6, 8, 8, 11, 11, 16, 16, 18, 16, 19, 21, 25, 25,
+					25, 34, 30, 32, 35, 37, 40, 42, 45, 48, 51, 54, 57, 60, 63, 66, 70, 74, 77, 81 } };
+	
+	/*
+	 * The 15 bits of format information (level and mask protected by the BCH(15,5)
+	 * code, XOR-ed with 101010000010010) for each correction level and mask
+	 */
+	private static final int[][] FORMAT_WORDS = {
+			{ 0x77C4, 0x72F3, 0x7DAA, 0x789D, 0x662F, 0x6318, 0x6C41, 0x6976 },
+			{ 0x5412, 0x5125, 0x5E7C, 0x5B4B, 0x45F9, 0x40CE, 0x4F97, 0x4AA0 },
+			{ 0x355F, 0x3068, 0x3F31, 0x3A06, 0x24B4, 0x2183, 0x2EDA, 0x2BED },
+			{ 0x1689, 0x13BE, 0x1CE7, 0x19D0, 0x0762, 0x0255, 0x0D0C, 0x083B } };
+	
+	/*
+	 * Number of characters of a single segment fitting in the data codewords, for
+	 * each correction level, mode (in the order of Mode) and version (index 0 is
+	 * unused)
+	 */
+	private static final int[][][] CAPACITIES = new int[CorrectionLvl.values().length][Mode.values().length][MAX_VERSION + 1];
+	
+	static {
+		for (CorrectionLvl level : CorrectionLvl.values()) {
+			for (Mode mode : Mode.values()) {
+				for (int version = 1; version <= MAX_VERSION; version++) {
+					int countBits = mode.getCharacterCountBits(version);
+					int bits = getCodeWordsLength(version, level) * 8 - 4 - countBits;
+					int characters;
+					switch (mode) {
+					case NUMERIC:
+						// 10 bits per 3 digits, 4 or 7 bits for the last 1 or 2
+						characters = bits / 10 * 3 + (bits % 10 >= 7 ? 2 : bits % 10 >= 4 ? 1 : 0);
+						break;
+					case ALPHANUMERIC:
+						// 11 bits per 2 characters, 6 bits for the last one
+						characters = bits / 11 * 2 + (bits % 11 >= 6 ? 1 : 0);
+						break;
+					default:
+						characters = bits / 8;
+					}
+					CAPACITIES[level.ordinal()][mode.ordinal()][version] = Math.min(characters, (1 << countBits) - 1);
+				}
+			}
+		}
+	}
+	
 	
 	
+	/**
+	 * @return the highest QR code version, 40
+	 */
+	public static int getMaxVersion() {
+		return MAX_VERSION;
+	}
 	
 	/**
 	 * Get the size of the matrix for a specific version.
@@ -25,7 +127,7 @@ public final class QRCodeInfos {
 	 * @return an integer : the size of the matrix for a given QR code version
 	 */
 	public static int getMatrixSize(int version) {
-		if(version>40) {
+		if(version>MAX_VERSION) {
 			throw new IllegalArgumentException("The maximum QR code Version is 40");
 		}
 		return MATRIX_SIZE_VERSION_1 + MATRIX_SIZE_STEP*(version-1);
@@ -39,22 +141,83 @@ public final class QRCodeInfos {
 	 * @return the maximum number of bytes of data that can be encoded for the given version
 	 */
 	public static int getMaxInputLength(int version) {
-		if(version>4) {
-			throw new UnsupportedOperationException("The version has to be between 1 and 5");
-		}
-		return VERSION_CODE_WORDS[version-1] -2 ;
+		return getMaxInputLength(version, CorrectionLvl.L);
 	}
 	
-	/** Get the number of error correction codewords needed for a given version
+	/**
+	 * Get the maximum input length for a given QR code version and correction level
+	 * @param version
+	 *        version of the QRcode
+	 * @param level
+	 *        error correction level
+	 * @return the maximum number of bytes of data that can be encoded in byte mode
+	 */
+	public static int getMaxInputLength(int version, CorrectionLvl level) {
+		// 4 bits of mode and 8 or 16 bits of length
+		return getCodeWordsLength(version, level) - (version < 10 ? 2 : 3);
+	}
+	
+	/**
+	 * Get the number of characters that a single segment of a mode can hold
+	 * @param version
+	 *        version of the QRcode
+	 * @param level
+	 *        error correction level
+	 * @param mode
+	 *        encoding mode of the segment
+	 * @return the maximum number of characters encoded in the mode, read from a
+	 *         precomputed table
+	 */
+	public static int getCapacity(int version, CorrectionLvl level, Mode mode) {
+		checkVersion(version);
+		return CAPACITIES[level.ordinal()][mode.ordinal()][version];
+	}
+	
+	/** Get the number of error correction codewords of each block for a given version
 	 * @param version
 	 * 			 version of the QRcode	
-	 * @return
+	 * @return the number of error correction codewords per block. For versions with a single
+	 *         block, this is the total number of error correction codewords
 	 */
 	public static int getECCLength(int version) {
-		if(version>4) {
-			throw new UnsupportedOperationException("The version has to be between 1 and 5");
-		}
-		return ERROR_CORRECTION_CODEWORDS[version-1] ;
+		return getECCLength(version, CorrectionLvl.L);
+	}
+	
+	/** Get the number of error correction codewords of each block for a given version
+	 * and correction level
+	 * @param version
+	 * 			 version of the QRcode
+	 * @param level
+	 *           error correction level
+	 * @return the number of error correction codewords per block
+	 */
+	public static int getECCLength(int version, CorrectionLvl level) {
+		checkVersion(version);
+		return ERROR_CORRECTION_CODEWORDS[level.ordinal()][version] ;
+	}
+	
+	/**
+	 * Get the number of blocks the codewords are split into for a given version
+	 * @param version
+	 *          version of the QRcode
+	 * @return the number of error correction blocks
+	 */
+	public static int getNumberOfBlocks(int version) {
+		return getNumberOfBlocks(version, CorrectionLvl.L);
+	}
+	
+	/**
+	 * Get the number of blocks the codewords are split into for a given version and
+	 * correction level
+	 * @param version
+	 *          version of the QRcode
+	 * @param level
+	 *          error correction level
+	 * @return the number of error correction blocks
+	 */
+	public static int getNumberOfBlocks(int version, CorrectionLvl level) {
+		checkVersion(version);
+		return ERROR_CORRECTION_BLOCKS[level.ordinal()][version];
 	}
 	
 	/**
@@ -64,12 +227,92 @@ public final class QRCodeInfos {
 	 * @return the number of codewords in the version
 	 */
 	public static int getCodeWordsLength(int version) {
-		if(version>4) {
-			throw new UnsupportedOperationException("The version has to be between 1 and 5");
+		return getCodeWordsLength(version, CorrectionLvl.L);
+	}
+	
+	/**
+	 * Get the number of codewords encoding the data for a given version and
+	 * correction level
+	 * @param version
+	 *          version of the QRcode
+	 * @param level
+	 *          error correction level
+	 * @return the number of data codewords
+	 */
+	public static int getCodeWordsLength(int version, CorrectionLvl level) {
+		return getTotalCodeWordsLength(version) - getECCLength(version, level) * getNumberOfBlocks(version, level);
+	}
+	
+	/**
+	 * Get the total number of codewords (data and error correction) for a given version
+	 * @param version
+	 *          version of the QRcode
+	 * @return the number of codewords fitting in the data modules of the version
+	 */
+	public static int getTotalCodeWordsLength(int version) {
+		checkVersion(version);
+		int size = getMatrixSize(version);
+		// finder patterns with separators and format information, timing patterns
+		int modules = size * size - 3 * 64 - 31 - 2 * (size - 16);
+		int[] alignments = getAlignmentPatternPositions(version);
+		if (alignments.length > 0) {
+			int count = alignments.length * alignments.length - 3;
+			// the alignment patterns crossing the timing patterns share 5 modules with them
+			modules -= count * 25 - 2 * (alignments.length - 2) * 5;
+		}
+		if (version >= 7) {
+			modules -= 36;
+		}
+		return modules / 8;
+	}
+	
+	/**
+	 * Get the coordinates of the centers of the alignment patterns for a given version.
+	 * The patterns are placed on every combination of two coordinates except the
+	 * three ones overlapping the finder patterns.
+	 * @param version
+	 *          version of the QRcode
+	 * @return the row and column coordinates, in increasing order (empty for version 1)
+	 */
+	public static int[] getAlignmentPatternPositions(int version) {
+		checkVersion(version);
+		if (version == 1) {
+			return new int[0];
+		}
+		int count = version / 7 + 2;
+		int step = version == 32 ? 26 : (version * 4 + count * 2 + 1) / (count * 2 - 2) * 2;
+		int[] positions = new int[count];
+		positions[0] = 6;
+		for (int i = count - 1, position = getMatrixSize(version) - 7; i >= 1; i--, position -= step) {
+			positions[i] = position;
+		}
+		return positions;
+	}
+	
+	/**
+	 * Return the 18 bits of version information (6 bits of version followed by the
+	 * BCH(18,6) code) needed from version 7
+	 * @param version
+	 *          version of the QRcode
+	 * @return the version information, most significant bit first, or 0 below version 7
+	 */
+	public static int getVersionInformation(int version) {
+		checkVersion(version);
+		if (version < 7) {
+			return 0;
+		}
+		int remainder = version;
+		for (int i = 0; i < 12; i++) {
+			remainder = (remainder << 1) ^ ((remainder >>> 11) * 0x1F25);
+		}
+		return version << 12 | remainder;
+	}
+	
+	private static void checkVersion(int version) {
+		if(version < 1 || version > MAX_VERSION) {
+			throw new IllegalArgumentException("The version has to be between 1 and 40");
 		}
-		return VERSION_CODE_WORDS[version-1] ;
 	}
-
 
 
 	/**
@@ -80,46 +323,41 @@ public final class QRCodeInfos {
 	 * @return the array of pixels encoding the format information. Most significant bit first
 	 */
 	public static boolean[] getFormatSequence(int mask) {
-		if(mask>7 || mask <0) {
-			throw new IllegalArgumentException("The mask has to be between 0 and 7");
-		}
-		int errorCorrectionLevel=CorrectionLvl.L.ordinal();
-		int code = ((LVL_CODE[errorCorrectionLevel]& 0x3)<<3) | (mask&0x7);
-		int current = code<<10;
-	
-		int poly = 0b10100110111;
-		int size = 15;
-		while(((0b1<<(size-1)) & current) ==0) {
-			size--;
-			if(size == 0) {
-				throw new IllegalAccessError();
-			}
-		}
-		
-		while(size>10) {
-			int paddedPoly = poly<<(size-11);
-	
-			current = paddedPoly^current;
-			
-			
-			while(((0b1<<(size-1)) & current) == 0) {
-				size--;
-				if(size == 0) {
-					throw new IllegalAccessError();
-				}
-			}
-		}
-		
-		int format = (code<<10 | (current& 0x3FF)) ^ 0b101010000010010;
-		
+		return getFormatSequence(mask, CorrectionLvl.L);
+	}
+	
+	/**
+	 * Same as {@link #getFormatSequence(int)} for a given correction level
+	 * @param mask
+	 *        the integer code of the mask to be used (must be between 0 and 7)
+	 * @param level
+	 *        error correction level
+	 * @return the array of pixels encoding the format information. Most significant bit first
+	 */
+	public static boolean[] getFormatSequence(int mask, CorrectionLvl level) {
+		int format = getFormatWord(mask, level);
 		boolean[] formatPixels = new boolean[15];
 		for(int i=0;i<formatPixels.length;i++) {
-			formatPixels[i] = !(((format >> (14 - i)) & 0b1) == 0);
+			formatPixels[i] = ((format >> (14 - i)) & 0b1) != 0;
 		}
-		
 		return formatPixels;
 	}
 	
+	/**
+	 * Return the format information related to error correction level and used mask as an integer
+	 * @param mask
+	 *        the integer code of the mask to be used (must be between 0 and 7)
+	 * @param level
+	 *        error correction level
+	 * @return the 15 bits of format information, the bit 14 being the first pixel of the sequence
+	 */
+	public static int getFormatWord(int mask, CorrectionLvl level) {
+		if(mask>7 || mask <0) {
+			throw new IllegalArgumentException("The mask has to be between 0 and 7");
+		}
+		return FORMAT_WORDS[level.ordinal()][mask];
+	}
+	
 	
 
 }
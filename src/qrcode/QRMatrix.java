@@ -0,0 +1,246 @@
+package qrcode;
+
+import java.util.Arrays;
+
+/**
+ * Compact representation of a QR code matrix: one bit per module, packed into
+ * rows of <code>long</code> words.
+ *
+ * Bit <code>x</code> of row <code>y</code> is the module at column
+ * <code>x</code>, line <code>y</code> (the same coordinates as
+ * <code>matrix[x][y]</code> in the <code>int[][]</code> form). A set bit is a
+ * dark module. A second bit plane of the same shape marks the function modules
+ * (finder, separators, alignment, timing, dark module, format and version
+ * information) so that data placement and masking can skip them word by word.
+ */
+public final class QRMatrix {
+
+	private final int size;
+	private final int wordsPerRow;
+	private final long[] modules;
+	private final long[] functions;
+
+	/**
+	 * Create an empty (all light, no function modules) matrix
+	 *
+	 * @param size the number of modules on each side
+	 */
+	public QRMatrix(int size) {
+		if (size <= 0) {
+			throw new IllegalArgumentException("The size of the matrix must be positive");
+		}
+		this.size = size;
+		this.wordsPerRow = (size + 63) >>> 6;
+		this.modules = new long[size * wordsPerRow];
+		this.functions = new long[size * wordsPerRow];
+	}
+
+	/**
+	 * Create an empty matrix of the size needed for a given version
+	 *
+	 * @param version the version number of the QR code
+	 * @return an empty matrix
+	 */
+	public static QRMatrix forVersion(int version) {
+		return new QRMatrix(QRCodeInfos.getMatrixSize(version));
+	}
+
+	/**
+	 * @return the number of modules on each side of the matrix
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * @return the version of the QR code matching the size of this matrix
+	 */
+	public int getVersion() {
+		return (size - 17) / 4;
+	}
+
+	/**
+	 * @return the number of long words used to store one row
+	 */
+	public int getWordsPerRow() {
+		return wordsPerRow;
+	}
+
+	/**
+	 * @param x column of the module
+	 * @param y row of the module
+	 * @return true if the module is dark
+	 */
+	public boolean isDark(int x, int y) {
+		return (modules[y * wordsPerRow + (x >>> 6)] & (1L << x)) != 0;
+	}
+
+	/**
+	 * Set the color of a module without changing its function flag
+	 *
+	 * @param x    column of the module
+	 * @param y    row of the module
+	 * @param dark the new color of the module
+	 */
+	public void setDark(int x, int y, boolean dark) {
+		int index = y * wordsPerRow + (x >>> 6);
+		if (dark) {
+			modules[index] |= 1L << x;
+		} else {
+			modules[index] &= ~(1L << x);
+		}
+	}
+
+	/**
+	 * @param x column of the module
+	 * @param y row of the module
+	 * @return true if the module is part of a function pattern
+	 */
+	public boolean isFunction(int x, int y) {
+		return (functions[y * wordsPerRow + (x >>> 6)] & (1L << x)) != 0;
+	}
+
+	/**
+	 * Mark a module as a function module and set its color
+	 *
+	 * @param x    column of the module
+	 * @param y    row of the module
+	 * @param dark the color of the module
+	 */
+	public void setFunction(int x, int y, boolean dark) {
+		functions[y * wordsPerRow + (x >>> 6)] |= 1L << x;
+		setDark(x, y, dark);
+	}
+
+	/**
+	 * @return the number of dark modules in the matrix
+	 */
+	public int countDark() {
+		int count = 0;
+		for (long word : modules) {
+			count += Long.bitCount(word);
+		}
+		return count;
+	}
+
+	/**
+	 * Reset every module to light and clear the function flags
+	 */
+	public void clear() {
+		Arrays.fill(modules, 0L);
+		Arrays.fill(functions, 0L);
+	}
+
+	/**
+	 * Overwrite this matrix with the content of another one of the same size
+	 *
+	 * @param other the matrix to copy
+	 */
+	public void copyFrom(QRMatrix other) {
+		if (other.size != size) {
+			throw new IllegalArgumentException("The size of the two matrices does not match: " + size + " and " + other.size);
+		}
+		System.arraycopy(other.modules, 0, modules, 0, modules.length);
+		System.arraycopy(other.functions, 0, functions, 0, functions.length);
+	}
+
+	/**
+	 * @return an independent copy of this matrix
+	 */
+	public QRMatrix copy() {
+		QRMatrix copy = new QRMatrix(size);
+		copy.copyFrom(this);
+		return copy;
+	}
+
+	/**
+	 * Create a packed matrix from the ARGB form. Modules equal to
+	 * {@link MatrixConstruction#B} are dark, every module that is not empty (0) is
+	 * considered as a function module.
+	 *
+	 * @param matrix the 2-dimensional array representing the QR code
+	 * @return the packed matrix
+	 */
+	public static QRMatrix fromArray(int[][] matrix) {
+		if (matrix.length != matrix[0].length) {
+			throw new IllegalArgumentException("The matrix must be squared");
+		}
+		QRMatrix packed = new QRMatrix(matrix.length);
+		for (int x = 0; x < matrix.length; x++) {
+			int word = x >>> 6;
+			long bit = 1L << x;
+			for (int y = 0; y < matrix.length; y++) {
+				int color = matrix[x][y];
+				if (color != 0) {
+					packed.functions[y * packed.wordsPerRow + word] |= bit;
+				}
+				if (color == MatrixConstruction.B) {
+					packed.modules[y * packed.wordsPerRow + word] |= bit;
+				}
+			}
+		}
+		return packed;
+	}
+
+	/**
+	 * Convert the matrix to the ARGB form, every module being either
+	 * {@link MatrixConstruction#B} or {@link MatrixConstruction#W}
+	 *
+	 * @return the 2-dimensional array representing the QR code
+	 */
+	public int[][] toArray() {
+		return toArray(false);
+	}
+
+	/**
+	 * Convert the matrix to the ARGB form
+	 *
+	 * @param functionOnly if true, the modules that are not function modules are
+	 *                     left empty (0), as in the output of
+	 *                     {@link MatrixConstruction#constructMatrix(int, int)}
+	 * @return the 2-dimensional array representing the QR code
+	 */
+	public int[][] toArray(boolean functionOnly) {
+		int[][] matrix = new int[size][size];
+		for (int y = 0; y < size; y++) {
+			int row = y * wordsPerRow;
+			for (int x = 0; x < size; x++) {
+				long bit = 1L << x;
+				if (functionOnly && (functions[row + (x >>> 6)] & bit) == 0) {
+					continue;
+				}
+				matrix[x][y] = (modules[row + (x >>> 6)] & bit) != 0 ? MatrixConstruction.B : MatrixConstruction.W;
+			}
+		}
+		return matrix;
+	}
+
+	/*
+	 * Raw access to the packed words for the word-wide algorithms of the package
+	 */
+
+	long[] modules() {
+		return modules;
+	}
+
+	long[] functions() {
+		return functions;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof QRMatrix)) {
+			return false;
+		}
+		QRMatrix other = (QRMatrix) obj;
+		return size == other.size && Arrays.equals(modules, other.modules);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * size + Arrays.hashCode(modules);
+	}
+}
@@ -0,0 +1,128 @@
+package qrcode;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.Arrays;
+
+import qrcode.MetricsListener.Stage;
+
+/**
+ * Conversion of QR codes to scaled images.
+ *
+ * The pixels are written straight into the backing array of a
+ * {@link BufferedImage#TYPE_BYTE_BINARY} (1 bit per pixel) or
+ * {@link BufferedImage#TYPE_BYTE_GRAY} (1 byte per pixel) raster: the runs of a
+ * module row are filled once in the first pixel row, which is then copied
+ * <code>scale - 1</code> times with {@link System#arraycopy}.
+ */
+public final class Rasterizer {
+
+	private Rasterizer() {
+	}
+
+	/**
+	 * @param matrix    the QR code in packed form
+	 * @param scale     the number of pixels per module side
+	 * @param border    the width of the quiet zone, in modules
+	 * @param imageType {@link BufferedImage#TYPE_BYTE_BINARY} or
+	 *                  {@link BufferedImage#TYPE_BYTE_GRAY}
+	 * @return the image of the QR code
+	 */
+	public static BufferedImage rasterize(QRMatrix matrix, int scale, int border, int imageType) {
+		if (scale < 1 || border < 0) {
+			throw new IllegalArgumentException("The scale must be positive and the border not negative");
+		}
+		if (imageType != BufferedImage.TYPE_BYTE_BINARY && imageType != BufferedImage.TYPE_BYTE_GRAY) {
+			throw new IllegalArgumentException("The image type has to be TYPE_BYTE_BINARY or TYPE_BYTE_GRAY");
+		}
+		long startTime = Metrics.start();
+		int size = matrix.getSize();
+		int width = (size + 2 * border) * scale;
+		BufferedImage image = new BufferedImage(width, width, imageType);
+		byte[] pixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+		boolean binary = imageType == BufferedImage.TYPE_BYTE_BINARY;
+		int stride = binary ? (width + 7) >>> 3 : width;
+		// white is the palette index 1 of the binary images and the level 255 of the gray ones
+		Arrays.fill(pixels, (byte) 0xFF);
+		int left = border * scale;
+		for (int y = 0; y < size; y++) {
+			int row = (left + y * scale) * stride;
+			int x = 0;
+			while (x < size) {
+				if (!matrix.isDark(x, y)) {
+					x++;
+					continue;
+				}
+				int start = x;
+				while (x < size && matrix.isDark(x, y)) {
+					x++;
+				}
+				int from = left + start * scale;
+				int to = left + x * scale;
+				if (binary) {
+					clearBits(pixels, row, from, to);
+				} else {
+					Arrays.fill(pixels, row + from, row + to, (byte) 0);
+				}
+			}
+			for (int i = 1; i < scale; i++) {
+				System.arraycopy(pixels, row, pixels, row + i * stride, stride);
+			}
+		}
+		Metrics.stop(Stage.RASTER, startTime);
+		return image;
+	}
+
+	/**
+	 * Produce the images of a QR code at several scales in one call, e.g. a
+	 * thumbnail, a screen and a print version
+	 *
+	 * @param matrix    the QR code in packed form
+	 * @param border    the width of the quiet zone, in modules
+	 * @param imageType {@link BufferedImage#TYPE_BYTE_BINARY} or
+	 *                  {@link BufferedImage#TYPE_BYTE_GRAY}
+	 * @param scales    the number of pixels per module side of each image
+	 * @return the images, in the order of the scales
+	 */
+	public static BufferedImage[] rasterize(QRMatrix matrix, int border, int imageType, int... scales) {
+		BufferedImage[] images = new BufferedImage[scales.length];
+		for (int i = 0; i < scales.length; i++) {
+			images[i] = rasterize(matrix, scales[i], border, imageType);
+		}
+		return images;
+	}
+
+	/**
+	 * Same as {@link #rasterize(QRMatrix, int, int, int)} for a QR code in ARGB
+	 * form, the modules of color {@link MatrixConstruction#B} being dark
+	 *
+	 * @param matrix    the QR code, <code>matrix[x][y]</code> being the module of
+	 *                  column x and row y
+	 * @param scale     the number of pixels per module side
+	 * @param border    the width of the quiet zone, in modules
+	 * @param imageType {@link BufferedImage#TYPE_BYTE_BINARY} or
+	 *                  {@link BufferedImage#TYPE_BYTE_GRAY}
+	 * @return the image of the QR code
+	 */
+	public static BufferedImage rasterize(int[][] matrix, int scale, int border, int imageType) {
+		return rasterize(QRMatrix.fromArray(matrix), scale, border, imageType);
+	}
+
+	/**
+	 * Clear the pixels from..to-1 of a 1 bit per pixel row, the first pixel being
+	 * the highest bit of the first byte
+	 */
+	private static void clearBits(byte[] pixels, int row, int from, int to) {
+		while (from < to && (from & 7) != 0) {
+			pixels[row + (from >>> 3)] &= ~(0x80 >>> (from & 7));
+			from++;
+		}
+		int fullBytes = (to - from) >>> 3;
+		Arrays.fill(pixels, row + (from >>> 3), row + (from >>> 3) + fullBytes, (byte) 0);
+		from += fullBytes << 3;
+		while (from < to) {
+			pixels[row + (from >>> 3)] &= ~(0x80 >>> (from & 7));
+			from++;
+		}
+	}
+}
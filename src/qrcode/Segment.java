@@ -0,0 +1,67 @@
+package qrcode;
+
+import qrcode.QRCodeInfos.Mode;
+
+/**
+ * A run of consecutive input bytes encoded with the same mode
+ */
+public final class Segment {
+
+	private final Mode mode;
+	private final int start;
+	private final int length;
+
+	/**
+	 * @param mode   the mode used to encode the bytes
+	 * @param start  the index of the first byte of the segment in the input
+	 * @param length the number of bytes (characters) of the segment
+	 */
+	public Segment(Mode mode, int start, int length) {
+		this.mode = mode;
+		this.start = start;
+		this.length = length;
+	}
+
+	public Mode getMode() {
+		return mode;
+	}
+
+	public int getStart() {
+		return start;
+	}
+
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * @param version version of the QR code
+	 * @return the number of bits of the segment, header included
+	 */
+	public int getBitLength(int version) {
+		return 4 + mode.getCharacterCountBits(version) + getDataBitLength(mode, length);
+	}
+
+	/**
+	 * @param mode   the encoding mode
+	 * @param length the number of characters
+	 * @return the number of bits encoding the characters, without header
+	 */
+	public static int getDataBitLength(Mode mode, int length) {
+		switch (mode) {
+		case NUMERIC:
+			// 10 bits for 3 digits, 4 or 7 bits for the last 1 or 2
+			return 10 * (length / 3) + (length % 3 == 0 ? 0 : length % 3 * 3 + 1);
+		case ALPHANUMERIC:
+			// 11 bits for 2 characters, 6 bits for the last one
+			return 11 * (length / 2) + 6 * (length % 2);
+		default:
+			return 8 * length;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return mode + "[" + start + ", " + (start + length) + ")";
+	}
+}
@@ -0,0 +1,322 @@
+package qrcode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import qrcode.QRCodeInfos.CorrectionLvl;
+import qrcode.QRCodeInfos.Mode;
+
+/**
+ * Split an input into the sequence of numeric, alphanumeric and byte segments
+ * that needs the fewest bits.
+ *
+ * The split is computed by dynamic programming over the characters: for each
+ * character and each mode, the cheapest encoding of the prefix ending in that
+ * mode is kept, either by extending the current segment or by closing it and
+ * paying the header of a new one. Costs are counted in sixths of a bit so that
+ * the 10/3 bits of a digit and 11/2 bits of an alphanumeric character are
+ * integers.
+ */
+public final class Segmentation {
+
+	private static final String ALPHANUMERIC_CHARSET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ $%*+-./:";
+
+	/*
+	 * Value of each byte in alphanumeric mode, -1 if it cannot be encoded
+	 */
+	private static final int[] ALPHANUMERIC_VALUES = new int[256];
+
+	static {
+		for (int i = 0; i < ALPHANUMERIC_VALUES.length; i++) {
+			ALPHANUMERIC_VALUES[i] = ALPHANUMERIC_CHARSET.indexOf(i);
+		}
+	}
+
+	private static final Mode[] MODES = Mode.values();
+
+	/*
+	 * Cost of a character in sixths of a bit, in the order of Mode
+	 */
+	private static final int[] CHARACTER_COSTS = { 20, 33, 48 };
+
+	private Segmentation() {
+	}
+
+	/**
+	 * @param value a byte of the input, between 0 and 255
+	 * @return the value of the character in alphanumeric mode, or -1
+	 */
+	public static int getAlphanumericValue(int value) {
+		return ALPHANUMERIC_VALUES[value & 0xFF];
+	}
+
+	/**
+	 * @param value the value of a character in alphanumeric mode, between 0 and 44
+	 * @return the character
+	 */
+	public static char getAlphanumericCharacter(int value) {
+		if (value < 0 || value >= ALPHANUMERIC_CHARSET.length()) {
+			throw new IllegalArgumentException("The alphanumeric value has to be between 0 and 44");
+		}
+		return ALPHANUMERIC_CHARSET.charAt(value);
+	}
+
+	/**
+	 * @param mode  the encoding mode
+	 * @param value a byte of the input
+	 * @return true if the byte can be encoded with the mode
+	 */
+	public static boolean canEncode(Mode mode, int value) {
+		value &= 0xFF;
+		switch (mode) {
+		case NUMERIC:
+			return value >= '0' && value <= '9';
+		case ALPHANUMERIC:
+			return ALPHANUMERIC_VALUES[value] >= 0;
+		default:
+			return true;
+		}
+	}
+
+	/**
+	 * Compute the segmentation of the input with the fewest bits for a version.
+	 * Only the length of the character counts depends on the version, so the
+	 * result is the same for all the versions of a range 1-9, 10-26 or 27-40.
+	 *
+	 * @param data    the input in ISO-8859-1
+	 * @param version the version of the QR code
+	 * @return the segments covering the whole input, in order
+	 */
+	public static List<Segment> optimalSegments(byte[] data, int version) {
+		Workspace workspace = new Workspace(data.length);
+		optimalSegments(data, data.length, version, workspace);
+		List<Segment> segments = new ArrayList<>(workspace.count);
+		for (int s = 0; s < workspace.count; s++) {
+			segments.add(new Segment(workspace.modes[s], workspace.starts[s], workspace.lengths[s]));
+		}
+		return segments;
+	}
+
+	/**
+	 * Same as {@link #optimalSegments(byte[], int)} for the first bytes of the
+	 * data, writing the segments into a reusable workspace instead of allocating
+	 *
+	 * @param data      the input in ISO-8859-1
+	 * @param length    the number of bytes of the input, at most the capacity of
+	 *                  the workspace
+	 * @param version   the version of the QR code
+	 * @param workspace receives the segments, in order
+	 */
+	static void optimalSegments(byte[] data, int length, int version, Workspace workspace) {
+		workspace.count = 0;
+		if (length == 0) {
+			return;
+		}
+		int modes = MODES.length;
+		int[] headerCosts = workspace.headerCosts;
+		for (int m = 0; m < modes; m++) {
+			headerCosts[m] = (4 + MODES[m].getCharacterCountBits(version)) * 6;
+		}
+		// charModes[i * modes + m]: mode of the character i when the state after it is m
+		byte[] charModes = workspace.charModes;
+		int[] costs = workspace.costs;
+		int[] nextCosts = workspace.nextCosts;
+		System.arraycopy(headerCosts, 0, costs, 0, modes);
+		for (int i = 0; i < length; i++) {
+			int row = i * modes;
+			for (int m = 0; m < modes; m++) {
+				if (canEncode(MODES[m], data[i])) {
+					nextCosts[m] = costs[m] + CHARACTER_COSTS[m];
+					charModes[row + m] = (byte) m;
+				} else {
+					nextCosts[m] = Integer.MAX_VALUE;
+					charModes[row + m] = -1;
+				}
+			}
+			// close the segment after this character and open one in another mode
+			for (int to = 0; to < modes; to++) {
+				for (int from = 0; from < modes; from++) {
+					if (from == to || charModes[row + from] != from) {
+						continue;
+					}
+					int cost = (nextCosts[from] + 5) / 6 * 6 + headerCosts[to];
+					if (cost < nextCosts[to]) {
+						nextCosts[to] = cost;
+						charModes[row + to] = (byte) from;
+					}
+				}
+			}
+			int[] swap = costs;
+			costs = nextCosts;
+			nextCosts = swap;
+		}
+
+		int mode = 0;
+		for (int m = 1; m < modes; m++) {
+			if (costs[m] < costs[mode]) {
+				mode = m;
+			}
+		}
+		// trace back the mode of each character and merge them into segments, from
+		// the last one
+		int end = length;
+		for (int i = length - 1; i >= 0; i--) {
+			int charMode = charModes[i * modes + mode];
+			if (i < length - 1 && charMode != mode) {
+				workspace.add(MODES[mode], i + 1, end - i - 1);
+				end = i + 1;
+			}
+			mode = charMode;
+		}
+		workspace.add(MODES[mode], 0, end);
+		workspace.reverse();
+	}
+
+	/**
+	 * Find the smallest version holding the input with its optimal segmentation.
+	 *
+	 * A single segment in the narrowest mode covering every byte is one of the
+	 * possible encodings, and no encoding of n characters is shorter than n
+	 * digits, so the capacity table of {@link QRCodeInfos#getCapacity} bounds the
+	 * versions to try. The input is only segmented when it mixes characters of
+	 * different modes and the bounds differ.
+	 *
+	 * @param data  the input in ISO-8859-1
+	 * @param level the error correction level
+	 * @return the smallest version holding the input with its optimal
+	 *         segmentation
+	 * @throws IllegalArgumentException if the input does not fit in version 40
+	 */
+	public static int smallestVersion(byte[] data, CorrectionLvl level) {
+		int maxVersion = QRCodeInfos.getMaxVersion();
+		// bit m set if a byte needs at least the mode m
+		int modes = 0;
+		for (byte value : data) {
+			modes |= canEncode(Mode.NUMERIC, value) ? 1 : canEncode(Mode.ALPHANUMERIC, value) ? 2 : 4;
+		}
+		Mode narrowest = MODES[Math.max(0, 31 - Integer.numberOfLeadingZeros(modes))];
+		boolean mixed = Integer.bitCount(modes) > 1;
+		int lower = smallestVersion(data.length, level, Mode.NUMERIC);
+		int upper = smallestVersion(data.length, level, narrowest);
+		if (lower > maxVersion) {
+			throw tooLong(data.length, level, narrowest);
+		}
+		if (mixed && lower < upper) {
+			int bits = -1;
+			for (int v = lower; v < upper && v <= maxVersion; v++) {
+				// the length of the character counts only changes at versions 10 and 27
+				if (bits < 0 || Mode.BYTE.getCharacterCountBits(v) != Mode.BYTE.getCharacterCountBits(v - 1)
+						|| Mode.NUMERIC.getCharacterCountBits(v) != Mode.NUMERIC.getCharacterCountBits(v - 1)) {
+					bits = getBitLength(optimalSegments(data, v), v);
+				}
+				if (bits <= QRCodeInfos.getCodeWordsLength(v, level) * 8) {
+					return v;
+				}
+			}
+		}
+		if (upper > maxVersion) {
+			throw tooLong(data.length, level, narrowest);
+		}
+		return upper;
+	}
+
+	/**
+	 * @return the smallest version whose single segment of the mode holds the
+	 *         characters, the maximal version plus one if none does
+	 */
+	private static int smallestVersion(int length, CorrectionLvl level, Mode mode) {
+		int version = 1;
+		while (version <= QRCodeInfos.getMaxVersion() && QRCodeInfos.getCapacity(version, level, mode) < length) {
+			version++;
+		}
+		return version;
+	}
+
+	private static IllegalArgumentException tooLong(int length, CorrectionLvl level, Mode mode) {
+		return new IllegalArgumentException("The input of " + length + " bytes does not fit in a QR code with level "
+				+ level + ": version " + QRCodeInfos.getMaxVersion() + " holds at most "
+				+ QRCodeInfos.getCapacity(QRCodeInfos.getMaxVersion(), level, mode) + " characters in " + mode
+				+ " mode");
+	}
+
+	/**
+	 * @param segments the segments of an input
+	 * @param version  the version of the QR code
+	 * @return the number of bits needed by the segments, headers included
+	 */
+	public static int getBitLength(List<Segment> segments, int version) {
+		int bits = 0;
+		for (Segment segment : segments) {
+			bits += segment.getBitLength(version);
+		}
+		return bits;
+	}
+
+	/**
+	 * Reusable buffers of the segmentation of inputs up to a fixed number of bytes
+	 */
+	static final class Workspace {
+		private final byte[] charModes;
+		private final int[] headerCosts = new int[MODES.length];
+		private final int[] costs = new int[MODES.length];
+		private final int[] nextCosts = new int[MODES.length];
+
+		final Mode[] modes;
+		final int[] starts;
+		final int[] lengths;
+		int count;
+
+		/**
+		 * @param capacity the maximal number of bytes of the inputs
+		 */
+		Workspace(int capacity) {
+			charModes = new byte[capacity * MODES.length];
+			modes = new Mode[Math.max(1, capacity)];
+			starts = new int[modes.length];
+			lengths = new int[modes.length];
+		}
+
+		/**
+		 * @param version the version of the QR code
+		 * @return the number of bits needed by the segments, headers included
+		 */
+		int getBitLength(int version) {
+			int bits = 0;
+			for (int s = 0; s < count; s++) {
+				bits += 4 + modes[s].getCharacterCountBits(version) + Segment.getDataBitLength(modes[s], lengths[s]);
+			}
+			return bits;
+		}
+
+		/**
+		 * Replace the segments by a single one covering the first bytes of the input
+		 */
+		void setSingleSegment(Mode mode, int length) {
+			count = 0;
+			if (length > 0) {
+				add(mode, 0, length);
+			}
+		}
+
+		private void add(Mode mode, int start, int length) {
+			modes[count] = mode;
+			starts[count] = start;
+			lengths[count] = length;
+			count++;
+		}
+
+		private void reverse() {
+			for (int i = 0, j = count - 1; i < j; i++, j--) {
+				Mode mode = modes[i];
+				modes[i] = modes[j];
+				modes[j] = mode;
+				int start = starts[i];
+				starts[i] = starts[j];
+				starts[j] = start;
+				int length = lengths[i];
+				lengths[i] = lengths[j];
+				lengths[j] = length;
+			}
+		}
+	}
+}
@@ -0,0 +1,107 @@
+package qrcode;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+
+import qrcode.MetricsListener.Stage;
+
+/**
+ * Vector output of QR codes as SVG.
+ *
+ * The coordinates are counted in modules. Each row of the matrix is turned into
+ * its runs of dark modules and every run is drawn as one rectangle of a single
+ * <code>&lt;path&gt;</code>, so the size of the document depends on the number of
+ * runs and not on the printed size. The background is one light rectangle
+ * covering the quiet zone.
+ */
+public final class SvgWriter {
+
+	private final int border;
+	private final double moduleSize;
+	private final String unit;
+
+	/**
+	 * Writer of SVG without explicit size, scaled to their container, with the
+	 * standard quiet zone of 4 modules
+	 */
+	public SvgWriter() {
+		this(4, 0, null);
+	}
+
+	/**
+	 * @param border     the width of the quiet zone, in modules
+	 * @param moduleSize the printed size of a module, 0 to let the document scale
+	 *                   to its container
+	 * @param unit       the CSS unit of the module size, e.g. "mm" or "in"
+	 */
+	public SvgWriter(int border, double moduleSize, String unit) {
+		if (border < 0 || moduleSize < 0) {
+			throw new IllegalArgumentException("The border and the module size must not be negative");
+		}
+		this.border = border;
+		this.moduleSize = moduleSize;
+		this.unit = unit == null ? "" : unit;
+	}
+
+	/**
+	 * Write a QR code as an SVG document
+	 *
+	 * @param matrix the QR code in packed form
+	 * @param out    the writer receiving the document, not closed
+	 * @throws IOException if the writer fails
+	 */
+	public void write(QRMatrix matrix, Writer out) throws IOException {
+		long startTime = Metrics.start();
+		int size = matrix.getSize();
+		int total = size + 2 * border;
+		out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+		out.write("<svg xmlns=\"http://www.w3.org/2000/svg\" version=\"1.1\" viewBox=\"0 0 " + total + " " + total + "\"");
+		if (moduleSize > 0) {
+			String length = String.format(Locale.ROOT, "%.4f", total * moduleSize).replaceAll("\\.?0+$", "") + unit;
+			out.write(" width=\"" + length + "\" height=\"" + length + "\"");
+		}
+		out.write(" shape-rendering=\"crispEdges\">\n");
+		out.write("<rect width=\"100%\" height=\"100%\" fill=\"#FFFFFF\"/>\n");
+		out.write("<path fill=\"#000000\" d=\"");
+		boolean first = true;
+		for (int y = 0; y < size; y++) {
+			int x = 0;
+			while (x < size) {
+				if (!matrix.isDark(x, y)) {
+					x++;
+					continue;
+				}
+				int start = x;
+				while (x < size && matrix.isDark(x, y)) {
+					x++;
+				}
+				if (!first) {
+					out.write(' ');
+				}
+				first = false;
+				// rectangle of the run, one module high
+				out.write("M" + (start + border) + "," + (y + border) + "h" + (x - start) + "v1h-" + (x - start) + "z");
+			}
+			if (!first) {
+				out.write('\n');
+			}
+		}
+		out.write("\"/>\n</svg>\n");
+		out.flush();
+		Metrics.stop(Stage.IO, startTime);
+	}
+
+	/**
+	 * Write a QR code in ARGB form as an SVG document, the modules of color
+	 * {@link MatrixConstruction#B} being dark
+	 *
+	 * @param matrix the QR code, <code>matrix[x][y]</code> being the module of
+	 *               column x and row y
+	 * @param out    the writer receiving the document, not closed
+	 * @throws IOException if the writer fails
+	 */
+	public void write(int[][] matrix, Writer out) throws IOException {
+		write(QRMatrix.fromArray(matrix), out);
+	}
+}
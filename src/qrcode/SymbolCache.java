@@ -0,0 +1,376 @@
+package qrcode;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import qrcode.QRCodeInfos.CorrectionLvl;
+
+/**
+ * Thread-safe cache of finished QR codes, and optionally of their encoded
+ * images, bounded by the memory they use.
+ *
+ * The entries are spread over independent segments according to the hash of
+ * their key, each segment evicting its least recently used entries when it
+ * exceeds its share of the bound. A hit costs one hash lookup under the lock of
+ * one segment.
+ *
+ * The cached matrices are shared between the callers and must not be
+ * modified.
+ */
+public final class SymbolCache {
+
+	/** Mask policy choosing the mask with the lowest penalty */
+	public static final int BEST_MASK = -1;
+
+	/*
+	 * Estimated overhead of an entry: key, entry, map node and array headers
+	 */
+	private static final int ENTRY_OVERHEAD = 128;
+
+	private final Segment[] segments;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder imageHits = new LongAdder();
+	private final LongAdder imageMisses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * @param maxBytes the memory used by the entries, matrices and images
+	 *                 included, 0 to disable the cache
+	 */
+	public SymbolCache(long maxBytes) {
+		this(maxBytes, Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors())) * 2);
+	}
+
+	/**
+	 * @param maxBytes the memory used by the entries, matrices and images
+	 *                 included, 0 to disable the cache
+	 * @param segments the number of independent segments, a power of two
+	 */
+	public SymbolCache(long maxBytes, int segments) {
+		if (maxBytes < 0 || segments <= 0 || Integer.bitCount(segments) != 1) {
+			throw new IllegalArgumentException("The size must not be negative and the segments a power of two");
+		}
+		this.segments = new Segment[segments];
+		for (int i = 0; i < segments; i++) {
+			this.segments[i] = new Segment(maxBytes / segments);
+		}
+	}
+
+	/**
+	 * @param payload the encoded bytes, not copied: must not be modified
+	 *                afterwards
+	 * @param version the version of the QR code, or any value standing for a
+	 *                policy that derives it from the payload
+	 * @param level   the error correction level
+	 * @param mask    the mask id, between 0 and 7, or {@link #BEST_MASK}
+	 * @return the key of the QR code
+	 */
+	public static Key key(byte[] payload, int version, CorrectionLvl level, int mask) {
+		if (mask < BEST_MASK || mask > 7) {
+			throw new IllegalArgumentException("The mask has to be between 0 and 7, or BEST_MASK");
+		}
+		return new Key(payload, version, level, mask);
+	}
+
+	/**
+	 * @param key the key of the QR code
+	 * @return the cached QR code, null if there is none
+	 */
+	public QRMatrix getMatrix(Key key) {
+		QRMatrix matrix = segment(key).getMatrix(key);
+		(matrix != null ? hits : misses).increment();
+		return matrix;
+	}
+
+	/**
+	 * Return the cached QR code, encoding and caching it on a miss. The encoding
+	 * runs outside of any lock, so concurrent misses on the same key may encode
+	 * the same QR code more than once.
+	 *
+	 * @param key     the key of the QR code
+	 * @param encoder encodes the QR code of a key into a matrix owned by the
+	 *                caller, such as a copy of the scratch matrix of a context:
+	 *                the matrix is cached as is
+	 * @return the QR code, shared and not to be modified
+	 */
+	public QRMatrix getMatrix(Key key, Function<? super Key, QRMatrix> encoder) {
+		QRMatrix matrix = getMatrix(key);
+		if (matrix == null) {
+			matrix = encoder.apply(key);
+			putMatrix(key, matrix);
+		}
+		return matrix;
+	}
+
+	/**
+	 * @param key    the key of the QR code
+	 * @param matrix the QR code, kept as is: must not be modified afterwards
+	 */
+	public void putMatrix(Key key, QRMatrix matrix) {
+		segment(key).put(key, matrix, null, null);
+	}
+
+	/**
+	 * @param key     the key of the QR code
+	 * @param variant the format and rendering options of the image, e.g.
+	 *                "png/8/4"
+	 * @return the cached image, null if there is none
+	 */
+	public byte[] getImage(Key key, String variant) {
+		byte[] image = segment(key).getImage(key, variant);
+		(image != null ? imageHits : imageMisses).increment();
+		return image;
+	}
+
+	/**
+	 * @param key     the key of the QR code
+	 * @param variant the format and rendering options of the image
+	 * @param image   the encoded image, kept as is: must not be modified
+	 *                afterwards
+	 */
+	public void putImage(Key key, String variant, byte[] image) {
+		segment(key).put(key, null, variant, image);
+	}
+
+	/**
+	 * Remove every entry, the statistics are kept
+	 */
+	public void clear() {
+		for (Segment segment : segments) {
+			segment.clear();
+		}
+	}
+
+	/**
+	 * @return the number of QR codes cached
+	 */
+	public int size() {
+		int size = 0;
+		for (Segment segment : segments) {
+			size += segment.size();
+		}
+		return size;
+	}
+
+	/**
+	 * @return the estimated memory used by the entries, in bytes
+	 */
+	public long getWeight() {
+		long weight = 0;
+		for (Segment segment : segments) {
+			weight += segment.weight();
+		}
+		return weight;
+	}
+
+	/**
+	 * @return the number of lookups of a QR code that hit
+	 */
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	/**
+	 * @return the number of lookups of a QR code that missed
+	 */
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	/**
+	 * @return the number of lookups of an image that hit, counted apart from the
+	 *         QR codes so that a request looking up both is not counted twice
+	 */
+	public long getImageHitCount() {
+		return imageHits.sum();
+	}
+
+	/**
+	 * @return the number of lookups of an image that missed
+	 */
+	public long getImageMissCount() {
+		return imageMisses.sum();
+	}
+
+	public long getEvictionCount() {
+		return evictions.sum();
+	}
+
+	/**
+	 * @return the proportion of lookups of a QR code that hit, 0 if there was
+	 *         none
+	 */
+	public double getHitRate() {
+		return rate(hits.sum(), misses.sum());
+	}
+
+	/**
+	 * @return the proportion of lookups of an image that hit, 0 if there was none
+	 */
+	public double getImageHitRate() {
+		return rate(imageHits.sum(), imageMisses.sum());
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d symbols, %d bytes, symbols: %d hits, %d misses (%.1f%% hit rate), "
+				+ "images: %d hits, %d misses (%.1f%% hit rate), %d evictions", size(), getWeight(), getHitCount(), getMissCount(), 100 * getHitRate(), getImageHitCount(),
+				getImageMissCount(), 100 * getImageHitRate(), getEvictionCount());
+	}
+
+	private static double rate(long hit, long miss) {
+		long total = hit + miss;
+		return total == 0 ? 0 : (double) hit / total;
+	}
+
+	private Segment segment(Key key) {
+		int hash = key.hash;
+		return segments[(hash ^ (hash >>> 16)) & (segments.length - 1)];
+	}
+
+	/**
+	 * Identity of a QR code: its payload, version, error correction level and
+	 * mask policy
+	 */
+	public static final class Key {
+		private final byte[] payload;
+		private final int version;
+		private final CorrectionLvl level;
+		private final int mask;
+		private final int hash;
+
+		private Key(byte[] payload, int version, CorrectionLvl level, int mask) {
+			this.payload = payload;
+			this.version = version;
+			this.level = level;
+			this.mask = mask;
+			hash = ((Arrays.hashCode(payload) * 31 + version) * 31 + level.ordinal()) * 31 + mask;
+		}
+
+		/**
+		 * @return the payload, shared with the key: must not be modified
+		 */
+		public byte[] getPayload() {
+			return payload;
+		}
+
+		public int getVersion() {
+			return version;
+		}
+
+		public CorrectionLvl getLevel() {
+			return level;
+		}
+
+		public int getMask() {
+			return mask;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return hash == other.hash && version == other.version && level == other.level && mask == other.mask
+					&& Arrays.equals(payload, other.payload);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+
+	/**
+	 * The matrix and images of one QR code, either may be missing
+	 */
+	private static final class Entry {
+		QRMatrix matrix;
+		Map<String, byte[]> images;
+		long weight;
+	}
+
+	/**
+	 * Least recently used map guarded by its own lock
+	 */
+	private final class Segment {
+		private final long maxBytes;
+		private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+		private long weight;
+
+		Segment(long maxBytes) {
+			this.maxBytes = maxBytes;
+		}
+
+		synchronized QRMatrix getMatrix(Key key) {
+			Entry entry = entries.get(key);
+			return entry == null ? null : entry.matrix;
+		}
+
+		synchronized byte[] getImage(Key key, String variant) {
+			Entry entry = entries.get(key);
+			return entry == null || entry.images == null ? null : entry.images.get(variant);
+		}
+
+		synchronized void put(Key key, QRMatrix matrix, String variant, byte[] image) {
+			long added = matrix != null ? 8L * matrix.modules().length : variant.length() * 2L + image.length;
+			if (ENTRY_OVERHEAD + key.payload.length + added > maxBytes) {
+				return;
+			}
+			Entry entry = entries.get(key);
+			if (entry == null) {
+				entry = new Entry();
+				entry.weight = ENTRY_OVERHEAD + key.payload.length;
+				entries.put(key, entry);
+				weight += entry.weight;
+			}
+			long previous = entry.weight;
+			if (matrix != null) {
+				if (entry.matrix != null) {
+					entry.weight -= 8L * entry.matrix.modules().length;
+				}
+				entry.matrix = matrix;
+			} else {
+				if (entry.images == null) {
+					entry.images = new HashMap<>(4);
+				}
+				byte[] replaced = entry.images.put(variant, image);
+				if (replaced != null) {
+					entry.weight -= variant.length() * 2L + replaced.length;
+				}
+			}
+			entry.weight += added;
+			weight += entry.weight - previous;
+			Iterator<Entry> eldest = entries.values().iterator();
+			while (weight > maxBytes) {
+				Entry evicted = eldest.next();
+				weight -= evicted.weight;
+				eldest.remove();
+				evictions.increment();
+			}
+		}
+
+		synchronized void clear() {
+			entries.clear();
+			weight = 0;
+		}
+
+		synchronized int size() {
+			return entries.size();
+		}
+
+		synchronized long weight() {
+			return weight;
+		}
+	}
+}
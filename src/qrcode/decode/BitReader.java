@@ -0,0 +1,48 @@
+package qrcode.decode;
+
+/**
+ * Sequential reader of the bits of codewords, most significant bit first
+ */
+final class BitReader {
+
+	private final int[] codewords;
+	private final int length;
+	private int position;
+
+	/**
+	 * @param codewords the codewords, one byte each
+	 * @param count     the number of codewords to read
+	 */
+	BitReader(int[] codewords, int count) {
+		this.codewords = codewords;
+		this.length = count * 8;
+	}
+
+	/**
+	 * @return the number of bits left
+	 */
+	int available() {
+		return length - position;
+	}
+
+	/**
+	 * @param width the number of bits, between 0 and 24
+	 * @return the next bits as an unsigned value
+	 * @throws IllegalArgumentException if fewer bits are left
+	 */
+	int read(int width) {
+		if (width > available()) {
+			throw new IllegalArgumentException("The data ends in the middle of a segment");
+		}
+		int value = 0;
+		while (width > 0) {
+			int offset = position & 7;
+			int bits = Math.min(width, 8 - offset);
+			int codeword = codewords[position >>> 3];
+			value = (value << bits) | ((codeword >>> (8 - offset - bits)) & ((1 << bits) - 1));
+			position += bits;
+			width -= bits;
+		}
+		return value;
+	}
+}
@@ -0,0 +1,75 @@
+package qrcode.decode;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import qrcode.QRCodeInfos.CorrectionLvl;
+
+/**
+ * Payload and format of a decoded QR code
+ */
+public final class DecodedSymbol {
+
+	private final byte[] payload;
+	private final int version;
+	private final CorrectionLvl level;
+	private final int mask;
+	private final int errorsCorrected;
+
+	DecodedSymbol(byte[] payload, int version, CorrectionLvl level, int mask, int errorsCorrected) {
+		this.payload = payload;
+		this.version = version;
+		this.level = level;
+		this.mask = mask;
+		this.errorsCorrected = errorsCorrected;
+	}
+
+	/**
+	 * @return a copy of the decoded bytes
+	 */
+	public byte[] getPayload() {
+		return payload.clone();
+	}
+
+	/**
+	 * @return the decoded bytes read as ISO-8859-1, the encoding used by the
+	 *         encoders of this project
+	 */
+	public String getText() {
+		return new String(payload, StandardCharsets.ISO_8859_1);
+	}
+
+	/**
+	 * @param expected the bytes the QR code should hold
+	 * @return true if the decoded bytes are the expected ones
+	 */
+	public boolean matches(byte[] expected) {
+		return Arrays.equals(payload, expected);
+	}
+
+	public int getVersion() {
+		return version;
+	}
+
+	public CorrectionLvl getLevel() {
+		return level;
+	}
+
+	public int getMask() {
+		return mask;
+	}
+
+	/**
+	 * @return the number of codewords that were read wrong and corrected, 0 for
+	 *         a clean read
+	 */
+	public int getErrorsCorrected() {
+		return errorsCorrected;
+	}
+
+	@Override
+	public String toString() {
+		return "version " + version + ", level " + level + ", mask " + mask + ", " + errorsCorrected
+				+ " errors corrected: " + getText();
+	}
+}
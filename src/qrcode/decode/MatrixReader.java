@@ -0,0 +1,164 @@
+package qrcode.decode;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.MultiPixelPackedSampleModel;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+
+import qrcode.QRCodeInfos;
+import qrcode.QRMatrix;
+
+/**
+ * Sampling of an upright, axis-aligned QR code image into its module grid, as
+ * produced by the rasterizers and writers of this project.
+ *
+ * The top edge of the top left finder pattern gives the position of the code
+ * and the size of a module (its 7 modules are dark), the last dark pixel of the
+ * same row gives the right edge of the code. Any scale and quiet zone are
+ * accepted, and every module is read at its center.
+ */
+public final class MatrixReader {
+
+	private MatrixReader() {
+	}
+
+	/**
+	 * @param image the image of the QR code
+	 * @return the modules of the QR code, without function flags
+	 * @throws IllegalArgumentException if no QR code is found
+	 */
+	public static QRMatrix read(BufferedImage image) {
+		return read(pixels(image), image.getWidth(), image.getHeight());
+	}
+
+	/**
+	 * @param pixels the ARGB pixels of the image, indexed as
+	 *               <code>pixels[x][y]</code> like the output of
+	 *               <code>Helpers.readMatrix</code>
+	 * @return the modules of the QR code, without function flags
+	 * @throws IllegalArgumentException if no QR code is found
+	 */
+	public static QRMatrix read(int[][] pixels) {
+		return read((x, y) -> isDark(pixels[x][y]), pixels.length, pixels[0].length);
+	}
+
+	/**
+	 * @param argb   the ARGB pixels of the image in row order
+	 * @param width  the width of the image
+	 * @param height the height of the image
+	 * @return the modules of the QR code, without function flags
+	 * @throws IllegalArgumentException if no QR code is found
+	 */
+	public static QRMatrix read(int[] argb, int width, int height) {
+		return read((x, y) -> isDark(argb[y * width + x]), width, height);
+	}
+
+	private static QRMatrix read(Pixels pixels, int width, int height) {
+		int top = -1;
+		int left = -1;
+		for (int y = 0; y < height && top < 0; y++) {
+			for (int x = 0; x < width; x++) {
+				if (pixels.isDark(x, y)) {
+					top = y;
+					left = x;
+					break;
+				}
+			}
+		}
+		if (top < 0) {
+			throw new IllegalArgumentException("No QR code found in the image");
+		}
+		int run = 0;
+		while (left + run < width && pixels.isDark(left + run, top)) {
+			run++;
+		}
+		int right = width - 1;
+		while (!pixels.isDark(right, top)) {
+			right--;
+		}
+		int extent = right - left + 1;
+		int version = (int) Math.round((extent * 7.0 / run - 17) / 4);
+		if (run < 7 || version < 1 || version > QRCodeInfos.getMaxVersion()) {
+			throw new IllegalArgumentException("No QR code found in the image");
+		}
+		int size = QRCodeInfos.getMatrixSize(version);
+		double module = (double) extent / size;
+		if (top + (int) ((size - 0.5) * module) >= height) {
+			throw new IllegalArgumentException("The QR code is cut by the bottom of the image");
+		}
+
+		int[] columns = new int[size];
+		for (int x = 0; x < size; x++) {
+			columns[x] = left + (int) ((x + 0.5) * module);
+		}
+		QRMatrix matrix = new QRMatrix(size);
+		for (int y = 0; y < size; y++) {
+			int row = top + (int) ((y + 0.5) * module);
+			for (int x = 0; x < size; x++) {
+				if (pixels.isDark(columns[x], row)) {
+					matrix.setDark(x, y, true);
+				}
+			}
+		}
+		return matrix;
+	}
+
+	/**
+	 * Only a fraction of the pixels is read, so the gray and binary images of the
+	 * rasterizers and of the png decoder are read in their data buffer instead of
+	 * being converted to ARGB
+	 */
+	private static Pixels pixels(BufferedImage image) {
+		WritableRaster raster = image.getRaster();
+		DataBuffer buffer = raster.getDataBuffer();
+		SampleModel model = raster.getSampleModel();
+		int translateX = raster.getSampleModelTranslateX();
+		int translateY = raster.getSampleModelTranslateY();
+		if (buffer instanceof DataBufferByte && buffer.getNumBanks() == 1) {
+			byte[] data = ((DataBufferByte) buffer).getData();
+			if (image.getType() == BufferedImage.TYPE_BYTE_GRAY && model instanceof ComponentSampleModel) {
+				ComponentSampleModel component = (ComponentSampleModel) model;
+				int stride = component.getScanlineStride();
+				int pixelStride = component.getPixelStride();
+				int offset = buffer.getOffset() + component.getBandOffsets()[0] - translateY * stride
+						- translateX * pixelStride;
+				return (x, y) -> (data[offset + y * stride + x * pixelStride] & 0xFF) < 128;
+			}
+			if (image.getType() == BufferedImage.TYPE_BYTE_BINARY && model instanceof MultiPixelPackedSampleModel
+					&& ((MultiPixelPackedSampleModel) model).getPixelBitStride() == 1) {
+				MultiPixelPackedSampleModel packed = (MultiPixelPackedSampleModel) model;
+				int stride = packed.getScanlineStride();
+				int offset = buffer.getOffset() - translateY * stride;
+				int bitOffset = packed.getDataBitOffset() - translateX;
+				ColorModel colors = image.getColorModel();
+				boolean zeroDark = isDark(colors.getRGB(0));
+				boolean oneDark = isDark(colors.getRGB(1));
+				return (x, y) -> {
+					int bit = bitOffset + x;
+					return ((data[offset + y * stride + (bit >>> 3)] >>> (7 - (bit & 7))) & 1) == 0 ? zeroDark : oneDark;
+				};
+			}
+		}
+		return (x, y) -> isDark(image.getRGB(x, y));
+	}
+
+	/**
+	 * @param argb the color of a pixel
+	 * @return true if the pixel is opaque and closer to black than to white
+	 */
+	static boolean isDark(int argb) {
+		if ((argb >>> 24) < 0x80) {
+			return false;
+		}
+		int luminance = ((argb >> 16) & 0xFF) * 299 + ((argb >> 8) & 0xFF) * 587 + (argb & 0xFF) * 114;
+		return luminance < 128 * 1000;
+	}
+
+	private interface Pixels {
+		boolean isDark(int x, int y);
+	}
+}
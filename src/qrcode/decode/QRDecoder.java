@@ -0,0 +1,264 @@
+package qrcode.decode;
+
+import java.awt.image.BufferedImage;
+
+import qrcode.DataPlacement;
+import qrcode.MaskPatterns;
+import qrcode.MatrixConstruction;
+import qrcode.QRCodeInfos;
+import qrcode.QRCodeInfos.CorrectionLvl;
+import qrcode.QRCodeInfos.Mode;
+import qrcode.QRMatrix;
+import qrcode.Segmentation;
+import reedsolomon.ErrorCorrectionDecoding;
+
+/**
+ * Decoder of QR codes, the inverse of the encoding pipeline:
+ * <ol>
+ * <li>the format information is read from both copies and replaced by the
+ * nearest valid format word, which gives the error correction level and the
+ * mask</li>
+ * <li>the mask is removed and the codewords are read in placement order</li>
+ * <li>the codewords are de-interleaved into their blocks, which are corrected
+ * with their error correction codewords</li>
+ * <li>the numeric, alphanumeric and byte segments of the data codewords are
+ * decoded, the ECI headers being skipped</li>
+ * </ol>
+ */
+public final class QRDecoder {
+
+	/*
+	 * The format words are at least 7 bits apart, so up to 3 wrong bits can be
+	 * corrected
+	 */
+	private static final int MAX_FORMAT_ERRORS = 3;
+
+	private static final CorrectionLvl[] LEVELS = CorrectionLvl.values();
+
+	private static final int ECI_INDICATOR = 0b0111;
+
+	private QRDecoder() {
+	}
+
+	/**
+	 * @param image the image of the QR code, see {@link MatrixReader}
+	 * @return the decoded QR code
+	 * @throws IllegalArgumentException if the image cannot be decoded
+	 */
+	public static DecodedSymbol decode(BufferedImage image) {
+		return decode(MatrixReader.read(image));
+	}
+
+	/**
+	 * @param matrix the modules of the QR code, not modified
+	 * @return the decoded QR code
+	 * @throws IllegalArgumentException if the matrix cannot be decoded
+	 */
+	public static DecodedSymbol decode(QRMatrix matrix) {
+		int version = matrix.getVersion();
+		if (version < 1 || version > QRCodeInfos.getMaxVersion()
+				|| QRCodeInfos.getMatrixSize(version) != matrix.getSize()) {
+			throw new IllegalArgumentException("The size " + matrix.getSize() + " is not the size of a QR code");
+		}
+		int format = readFormat(matrix);
+		CorrectionLvl level = LEVELS[format >>> 3];
+		int mask = format & 7;
+
+		QRMatrix unmasked = matrix.copy();
+		MaskPatterns.apply(unmasked, mask);
+		int[] codewords = new int[QRCodeInfos.getTotalCodeWordsLength(version)];
+		DataPlacement.read(unmasked, codewords);
+
+		int dataLength = QRCodeInfos.getCodeWordsLength(version, level);
+		int blocks = QRCodeInfos.getNumberOfBlocks(version, level);
+		int eccLength = QRCodeInfos.getECCLength(version, level);
+		int[] data = new int[dataLength];
+		int[] errorCorrection = new int[blocks * eccLength];
+		deinterleave(codewords, dataLength, blocks, eccLength, data, errorCorrection);
+		int corrected = correct(data, errorCorrection, blocks, eccLength);
+		return new DecodedSymbol(decodeSegments(data, version), version, level, mask, corrected);
+	}
+
+	/**
+	 * @return the level ordinal times 8 plus the mask of the format word nearest
+	 *         to one of the two copies
+	 */
+	private static int readFormat(QRMatrix matrix) {
+		int first = MatrixConstruction.readFormatInformation(matrix, 0);
+		int second = MatrixConstruction.readFormatInformation(matrix, 1);
+		int best = -1;
+		int bestDistance = MAX_FORMAT_ERRORS + 1;
+		for (int level = 0; level < LEVELS.length; level++) {
+			for (int mask = 0; mask < 8; mask++) {
+				int word = QRCodeInfos.getFormatWord(mask, LEVELS[level]);
+				int distance = Math.min(Integer.bitCount(word ^ first), Integer.bitCount(word ^ second));
+				if (distance < bestDistance) {
+					best = level * 8 + mask;
+					bestDistance = distance;
+				}
+			}
+		}
+		if (best < 0) {
+			throw new IllegalArgumentException("The format information cannot be read");
+		}
+		return best;
+	}
+
+	/**
+	 * Undo the interleaving of the codewords: the data codewords of the blocks
+	 * alternate, the first blocks being one codeword shorter when the data cannot
+	 * be split evenly, then their error correction codewords alternate
+	 *
+	 * @param codewords       the codewords in placement order
+	 * @param dataLength      the number of data codewords
+	 * @param blocks          the number of blocks
+	 * @param eccLength       the number of error correction codewords per block
+	 * @param data            receives the data codewords of the blocks one after
+	 *                        the other
+	 * @param errorCorrection receives the error correction codewords of the
+	 *                        blocks one after the other
+	 */
+	static void deinterleave(int[] codewords, int dataLength, int blocks, int eccLength, int[] data,
+			int[] errorCorrection) {
+		int shortBlocks = blocks - dataLength % blocks;
+		int shortLength = dataLength / blocks;
+		int index = 0;
+		for (int i = 0; i <= shortLength; i++) {
+			for (int block = 0; block < blocks; block++) {
+				if (i < shortLength || block >= shortBlocks) {
+					data[blockStart(block, shortBlocks, shortLength) + i] = codewords[index++];
+				}
+			}
+		}
+		for (int i = 0; i < eccLength; i++) {
+			for (int block = 0; block < blocks; block++) {
+				errorCorrection[block * eccLength + i] = codewords[index++];
+			}
+		}
+	}
+
+	/**
+	 * Correct the data codewords of each block with its error correction
+	 * codewords
+	 *
+	 * @return the number of codewords corrected
+	 * @throws IllegalArgumentException if a block has too many errors
+	 */
+	private static int correct(int[] data, int[] errorCorrection, int blocks, int eccLength) {
+		int shortBlocks = blocks - data.length % blocks;
+		int shortLength = data.length / blocks;
+		int[] block = new int[shortLength + 1 + eccLength];
+		int corrected = 0;
+		for (int b = 0; b < blocks; b++) {
+			int start = blockStart(b, shortBlocks, shortLength);
+			int length = b < shortBlocks ? shortLength : shortLength + 1;
+			System.arraycopy(data, start, block, 0, length);
+			System.arraycopy(errorCorrection, b * eccLength, block, length, eccLength);
+			int errors = ErrorCorrectionDecoding.decode(block, 0, length + eccLength, eccLength);
+			if (errors == ErrorCorrectionDecoding.UNCORRECTABLE) {
+				throw new IllegalArgumentException("The block " + b + " has too many errors to be corrected");
+			}
+			if (errors > 0) {
+				System.arraycopy(block, 0, data, start, length);
+				corrected += errors;
+			}
+		}
+		return corrected;
+	}
+
+	private static int blockStart(int block, int shortBlocks, int shortLength) {
+		return block * shortLength + Math.max(0, block - shortBlocks);
+	}
+
+	/**
+	 * @param data    the data codewords
+	 * @param version the version of the QR code
+	 * @return the bytes of the segments, up to the terminator or the end of the
+	 *         data
+	 */
+	static byte[] decodeSegments(int[] data, int version) {
+		BitReader reader = new BitReader(data, data.length);
+		// a digit is the shortest character, with 10 bits for 3 of them
+		byte[] payload = new byte[data.length * 8 * 3 / 10 + 3];
+		int length = 0;
+		while (reader.available() >= 4) {
+			int indicator = reader.read(4);
+			if (indicator == 0) {
+				break;
+			}
+			if (indicator == ECI_INDICATOR) {
+				skipEci(reader);
+				continue;
+			}
+			Mode mode = mode(indicator);
+			int count = reader.read(mode.getCharacterCountBits(version));
+			if (length + count > payload.length) {
+				throw new IllegalArgumentException("The segment is longer than the data");
+			}
+			switch (mode) {
+			case NUMERIC:
+				for (int remaining = count; remaining > 0; remaining -= 3) {
+					int digits = Math.min(3, remaining);
+					int value = reader.read(digits * 3 + 1);
+					if (value >= (digits == 3 ? 1000 : digits == 2 ? 100 : 10)) {
+						throw new IllegalArgumentException("Invalid numeric value: " + value);
+					}
+					for (int d = digits - 1; d >= 0; d--) {
+						payload[length + d] = (byte) ('0' + value % 10);
+						value /= 10;
+					}
+					length += digits;
+				}
+				break;
+			case ALPHANUMERIC:
+				for (int remaining = count; remaining > 0; remaining -= 2) {
+					if (remaining >= 2) {
+						int value = reader.read(11);
+						if (value >= 45 * 45) {
+							throw new IllegalArgumentException("Invalid alphanumeric value: " + value);
+						}
+						payload[length++] = (byte) Segmentation.getAlphanumericCharacter(value / 45);
+						payload[length++] = (byte) Segmentation.getAlphanumericCharacter(value % 45);
+					} else {
+						payload[length++] = (byte) Segmentation.getAlphanumericCharacter(reader.read(6));
+					}
+				}
+				break;
+			default:
+				for (int i = 0; i < count; i++) {
+					payload[length++] = (byte) reader.read(8);
+				}
+			}
+		}
+		byte[] result = new byte[length];
+		System.arraycopy(payload, 0, result, 0, length);
+		return result;
+	}
+
+	/**
+	 * Skip the designator of an extended channel interpretation, the payload is
+	 * returned as bytes whatever their character set
+	 */
+	private static void skipEci(BitReader reader) {
+		int first = reader.read(8);
+		if ((first & 0x80) == 0) {
+			return;
+		}
+		if ((first & 0x40) == 0) {
+			reader.read(8);
+		} else if ((first & 0x20) == 0) {
+			reader.read(16);
+		} else {
+			throw new IllegalArgumentException("Invalid ECI designator");
+		}
+	}
+
+	private static Mode mode(int indicator) {
+		for (Mode mode : Mode.values()) {
+			if (mode.getIndicator() == indicator) {
+				return mode;
+			}
+		}
+		throw new IllegalArgumentException("Unsupported mode indicator: " + indicator);
+	}
+}
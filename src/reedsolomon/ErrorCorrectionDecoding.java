@@ -0,0 +1,219 @@
+package reedsolomon;
+
+/**
+ * Correction of the codewords of a block with the error correction codewords
+ * of {@link ErrorCorrectionEncoding}.
+ *
+ * The syndromes are computed first, and a block whose syndromes are all zero
+ * is returned untouched without allocating anything: this is the common case
+ * of a clean read. Otherwise the error locator is found with Berlekamp-Massey,
+ * its roots with a Chien search and the error values with the Forney formula.
+ * Up to half the number of error correction codewords can be corrected.
+ */
+public final class ErrorCorrectionDecoding {
+
+	/** Returned when a block has more errors than can be corrected */
+	public static final int UNCORRECTABLE = -1;
+
+	private static final int SYNDROME_LANES = 4;
+
+	private ErrorCorrectionDecoding() {
+	}
+
+	/**
+	 * Correct a block in place
+	 *
+	 * @param codewords the message codewords followed by the error correction
+	 *                  codewords
+	 * @param eccLength the number of error correction codewords
+	 * @return the number of codewords corrected, or {@link #UNCORRECTABLE}
+	 */
+	public static int decode(int[] codewords, int eccLength) {
+		return decode(codewords, 0, codewords.length, eccLength);
+	}
+
+	/**
+	 * Correct a block of an array in place
+	 *
+	 * @param codewords the array holding the block: the message codewords
+	 *                  followed by the error correction codewords
+	 * @param offset    the index of the first codeword of the block
+	 * @param length    the number of codewords of the block, error correction
+	 *                  included
+	 * @param eccLength the number of error correction codewords
+	 * @return the number of codewords corrected, or {@link #UNCORRECTABLE}
+	 */
+	public static int decode(int[] codewords, int offset, int length, int eccLength) {
+		if (eccLength < 1 || eccLength > length || length > 255) {
+			throw new IllegalArgumentException("The block has to hold between 1 and 255 codewords, error correction included");
+		}
+		int[] syndromes = null;
+		for (int j = 0; j < eccLength; j += SYNDROME_LANES) {
+			int valid = Math.min(SYNDROME_LANES, eccLength - j);
+			long lanes = syndromes(codewords, offset, length, j) & ((1L << (valid * 8)) - 1);
+			if (lanes != 0) {
+				if (syndromes == null) {
+					syndromes = new int[eccLength];
+				}
+				for (int lane = 0; lane < valid; lane++) {
+					syndromes[j + lane] = (int) (lanes >>> (lane * 8)) & 0xFF;
+				}
+			}
+		}
+		if (syndromes == null) {
+			return 0;
+		}
+
+		int[] locator = errorLocator(syndromes);
+		int errors = degree(locator);
+		if (2 * errors > eccLength) {
+			return UNCORRECTABLE;
+		}
+		int[] positions = new int[errors];
+		if (findRoots(locator, length, positions) != errors) {
+			return UNCORRECTABLE;
+		}
+		int[] evaluator = errorEvaluator(syndromes, locator);
+		for (int position : positions) {
+			// the codeword at index i is the coefficient of x^(length - 1 - i)
+			int power = length - 1 - position;
+			int inverse = GaloisField.exp(255 - power);
+			int derivative = 0;
+			for (int k = 1; k < locator.length; k += 2) {
+				derivative ^= GaloisField.multiply(locator[k], GaloisField.exp((255 - power) * (k - 1) % 255));
+			}
+			if (derivative == 0) {
+				return UNCORRECTABLE;
+			}
+			int magnitude = GaloisField.multiply(GaloisField.exp(power), GaloisField.divide(evaluate(evaluator, inverse), derivative));
+			codewords[offset + position] ^= magnitude;
+		}
+		return errors;
+	}
+
+	/**
+	 * Evaluate the block polynomial at 2^first to 2^(first + 3) by Horner's rule.
+	 * The four evaluations are independent, so they run side by side instead of
+	 * waiting for each other's table lookups. The lanes past the number of
+	 * syndromes hold garbage and are masked by the caller.
+	 *
+	 * @return the four syndromes, one per byte, the first in the lowest byte
+	 */
+	private static long syndromes(int[] codewords, int offset, int length, int first) {
+		int s0 = 0;
+		int s1 = 0;
+		int s2 = 0;
+		int s3 = 0;
+		for (int i = offset; i < offset + length; i++) {
+			int codeword = codewords[i] & 0xFF;
+			s0 = GaloisField.exp(GaloisField.log(s0) + first) ^ codeword;
+			s1 = GaloisField.exp(GaloisField.log(s1) + first + 1) ^ codeword;
+			s2 = GaloisField.exp(GaloisField.log(s2) + first + 2) ^ codeword;
+			s3 = GaloisField.exp(GaloisField.log(s3) + first + 3) ^ codeword;
+		}
+		return s0 | s1 << 8 | s2 << 16 | (long) s3 << 24;
+	}
+
+	/**
+	 * Berlekamp-Massey: the shortest linear recurrence generating the syndromes
+	 *
+	 * @return the coefficients of the error locator, lowest degree first
+	 */
+	private static int[] errorLocator(int[] syndromes) {
+		int n = syndromes.length;
+		int[] locator = new int[n + 1];
+		int[] previous = new int[n + 1];
+		int[] swap = new int[n + 1];
+		locator[0] = 1;
+		previous[0] = 1;
+		int length = 0;
+		int shift = 1;
+		int previousDiscrepancy = 1;
+		for (int k = 0; k < n; k++) {
+			int discrepancy = syndromes[k];
+			for (int i = 1; i <= length; i++) {
+				discrepancy ^= GaloisField.multiply(locator[i], syndromes[k - i]);
+			}
+			if (discrepancy == 0) {
+				shift++;
+				continue;
+			}
+			int factor = GaloisField.divide(discrepancy, previousDiscrepancy);
+			boolean grows = 2 * length <= k;
+			if (grows) {
+				System.arraycopy(locator, 0, swap, 0, n + 1);
+			}
+			for (int i = 0; i + shift <= n; i++) {
+				locator[i + shift] ^= GaloisField.multiply(factor, previous[i]);
+			}
+			if (grows) {
+				int[] old = previous;
+				previous = swap;
+				swap = old;
+				length = k + 1 - length;
+				previousDiscrepancy = discrepancy;
+				shift = 1;
+			} else {
+				shift++;
+			}
+		}
+		return locator;
+	}
+
+	/**
+	 * Chien search: the positions of the block whose locator 2^power has its
+	 * inverse as a root of the error locator
+	 *
+	 * @return the number of roots found
+	 */
+	private static int findRoots(int[] locator, int length, int[] positions) {
+		int found = 0;
+		for (int position = 0; position < length; position++) {
+			int power = length - 1 - position;
+			if (evaluate(locator, GaloisField.exp(255 - power)) == 0) {
+				if (found == positions.length) {
+					return found + 1;
+				}
+				positions[found++] = position;
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * @return the error evaluator S(x) * locator(x) mod x^(number of syndromes),
+	 *         lowest degree first
+	 */
+	private static int[] errorEvaluator(int[] syndromes, int[] locator) {
+		int n = syndromes.length;
+		int[] evaluator = new int[n];
+		for (int i = 0; i < n; i++) {
+			int value = 0;
+			for (int k = 0; k <= i && k < locator.length; k++) {
+				value ^= GaloisField.multiply(locator[k], syndromes[i - k]);
+			}
+			evaluator[i] = value;
+		}
+		return evaluator;
+	}
+
+	/**
+	 * @return the value at x of a polynomial given lowest degree first
+	 */
+	private static int evaluate(int[] polynomial, int x) {
+		int value = 0;
+		int logX = GaloisField.log(x);
+		for (int i = polynomial.length - 1; i >= 0; i--) {
+			value = GaloisField.exp(GaloisField.log(value) + logX) ^ polynomial[i];
+		}
+		return value;
+	}
+
+	private static int degree(int[] polynomial) {
+		int degree = polynomial.length - 1;
+		while (degree > 0 && polynomial[degree] == 0) {
+			degree--;
+		}
+		return degree;
+	}
+}
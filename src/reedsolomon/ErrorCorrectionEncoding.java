@@ -1,53 +1,14 @@
 package reedsolomon;
 
-public final class ErrorCorrectionEncoding {
-	
-	
-	
-	
-	
-	
-	
-	private static final int[] ANTILOG_TABLE = antilogTableGenerator();
-	private static final int[] LOG_TABLE = logTableGenerator();
-	
-	private static final int[] antilogTableGenerator() {
-		int[] table = new int[256];
-		int n = 1;
-		for(int i=0;i<256;i++) {
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
-			if(table[n]==0) {
-				table[n]= i;
-			}
-			
-			n*=2;
-			if(n>255) {
-				n= n^285;
-			}
-		}
-		
-		table[0] = -1;
-		return table;
-	}
-	
-	
-	
-	
-	private static int[] logTableGenerator() {
-		int[] table = new int[256];
-		int n = 1;
-		for(int i=0;i<256;i++) {
-			table[i] = n;
-			n*=2;
-			if(n>255) {
-				n= n^285;
-			}
-		}
-		
-		
-		return table;
-	}
+public final class ErrorCorrectionEncoding {
 
+	/*
+	 * Generator polynomials indexed by their degree. Only the logarithms of the
+	 * coefficients below the leading one are kept, highest degree first.
+	 */
+	private static final AtomicReferenceArray<int[]> GENERATORS = new AtomicReferenceArray<>(256);
 
 	/**
 	 * Generate a given number of error correction codewords (ECC) for the given sequence of bytes
@@ -56,131 +17,100 @@ public final class ErrorCorrectionEncoding {
 	 * @return An array of ECC bytes for messageCodeWords
 	 */
 	public static int[] encode(int[] messageCodeWords,int errorCorrectionCodewords) {
-		
-		/*
-		 * Generate the message polynomial
-		 */
-		GalloisNumber[] messagePoly = new GalloisNumber[messageCodeWords.length];
-		int i= messageCodeWords.length-1;
-		for(int word:messageCodeWords) {
-			messagePoly[i--] =GalloisNumber.getGalloisNumber( word & 0xFF); 
-		}
-		
-		/*
-		 * Create the generator polynomial
-		 */
-		GalloisNumber[] generatorPoly = polynomialGenerator(errorCorrectionCodewords);
-		
-		GalloisNumber[] remainder = messagePoly;
-		
-		for(int step=0;step<messageCodeWords.length;step++ ) {
-			int remainderSize = errorCorrectionCodewords<remainder.length? remainder.length-1:errorCorrectionCodewords;
-			GalloisNumber[] nextRemainder = new  GalloisNumber[remainderSize];
-			
-			
-			/*
-			 * multiply the generator polynomial
-			 */
-			GalloisNumber[] divisor = new GalloisNumber[generatorPoly.length];
-			GalloisNumber mul = remainder[remainder.length-1];
-			i = 0;
-			for(GalloisNumber coeff:generatorPoly) {
-				divisor[i++] = coeff.mul(mul);
-			}
-			
-			/*
-			 * XOR result with remainder
-			 */
-			for(int j=1;j<=remainderSize;j++) {
-				GalloisNumber temp = null;
-				if(divisor.length-j-1 >=0 && remainder.length-j-1>=0) {
-					temp = divisor[divisor.length-j-1].add(remainder[remainder.length-j-1]);
-				}else if(remainder.length-j-1>=0){
-					temp = remainder[remainder.length-j-1];
-				}else {
-					temp = divisor[divisor.length-j-1];
-				}
-				
-				nextRemainder[remainderSize-j] = temp;
-			}
-			
-			remainder=nextRemainder;
-			
-		}
-		
-		
-		/*
-		 * Generate error correction codewords
-		 */
 		int[] errorCodewords = new int[errorCorrectionCodewords];
-		i= errorCorrectionCodewords-1;
-		for(GalloisNumber coeff:remainder) {
-			errorCodewords[i--] =  0xFF & coeff.represent();
-		}
+		encode(messageCodeWords, 0, messageCodeWords.length, errorCorrectionCodewords, errorCodewords, 0);
 		return errorCodewords;
 	}
-	
-	
-	private final static class GalloisNumber{
-		final int p;
-		
-		public GalloisNumber(int power) {
-			p=power;
+
+	/**
+	 * Generate the error correction codewords of a part of an array into a caller-provided buffer.
+	 * The remainder of the division by the generator polynomial is computed in place
+	 * in the output, nothing is allocated.
+	 * @param message the array holding the message codewords
+	 * @param offset the index of the first message codeword
+	 * @param length the number of message codewords
+	 * @param errorCorrectionCodewords the number of ECC to generate
+	 * @param output the array receiving the ECC
+	 * @param outputOffset the index of the first ECC in output
+	 */
+	public static void encode(int[] message, int offset, int length, int errorCorrectionCodewords, int[] output, int outputOffset) {
+		int[] generator = generator(errorCorrectionCodewords);
+		int last = outputOffset + errorCorrectionCodewords - 1;
+		for (int i = outputOffset; i <= last; i++) {
+			output[i] = 0;
 		}
-		
-		public static GalloisNumber getGalloisNumber(int number) {
-			if(number>255) {
-				number=number^285;
+		for (int i = offset; i < offset + length; i++) {
+			int factor = (message[i] & 0xFF) ^ output[outputOffset];
+			System.arraycopy(output, outputOffset + 1, output, outputOffset, errorCorrectionCodewords - 1);
+			output[last] = 0;
+			if (factor != 0) {
+				int logFactor = GaloisField.log(factor);
+				for (int j = 0; j < errorCorrectionCodewords; j++) {
+					output[outputOffset + j] ^= GaloisField.exp(logFactor + generator[j]);
+				}
 			}
-			return new GalloisNumber(ANTILOG_TABLE[number]);
 		}
-		
-		public GalloisNumber add(GalloisNumber n2) {
-			int res = this.represent() ^ n2.represent();
-			return getGalloisNumber(res);
+	}
+
+	/**
+	 * Same as {@link #encode(int[], int, int, int, int[], int)} on byte arrays
+	 * @param message the array holding the message codewords
+	 * @param offset the index of the first message codeword
+	 * @param length the number of message codewords
+	 * @param errorCorrectionCodewords the number of ECC to generate
+	 * @param output the array receiving the ECC
+	 * @param outputOffset the index of the first ECC in output
+	 */
+	public static void encode(byte[] message, int offset, int length, int errorCorrectionCodewords, byte[] output, int outputOffset) {
+		int[] generator = generator(errorCorrectionCodewords);
+		int last = outputOffset + errorCorrectionCodewords - 1;
+		for (int i = outputOffset; i <= last; i++) {
+			output[i] = 0;
 		}
-		
-		public GalloisNumber mul(GalloisNumber n2) {
-			if(p<0 || n2.p<0) {
-				return new GalloisNumber(-1);
+		for (int i = offset; i < offset + length; i++) {
+			int factor = (message[i] ^ output[outputOffset]) & 0xFF;
+			System.arraycopy(output, outputOffset + 1, output, outputOffset, errorCorrectionCodewords - 1);
+			output[last] = 0;
+			if (factor != 0) {
+				int logFactor = GaloisField.log(factor);
+				for (int j = 0; j < errorCorrectionCodewords; j++) {
+					output[outputOffset + j] ^= GaloisField.exp(logFactor + generator[j]);
+				}
 			}
-			return new GalloisNumber((n2.p +p)%255 );
 		}
-		
-		public int represent() {
-			if(p<0) {
-				return 0;
-			}
-			return LOG_TABLE[p];
+	}
+
+	/**
+	 * @param degree the number of ECC
+	 * @return the cached logarithms of the coefficients of (x - 2^0)(x - 2^1)...(x - 2^(degree-1))
+	 */
+	private static int[] generator(int degree) {
+		if (degree < 1 || degree > 255) {
+			throw new IllegalArgumentException("The number of error correction codewords has to be between 1 and 255");
 		}
-		
-		public String toString() {
-			if(p<0) {
-				return "0";
-			}
-			return "a^"+p;
+		int[] generator = GENERATORS.get(degree);
+		if (generator == null) {
+			generator = polynomialGenerator(degree);
+			GENERATORS.compareAndSet(degree, null, generator);
+			generator = GENERATORS.get(degree);
 		}
-		
+		return generator;
 	}
 
-	private final static GalloisNumber[] polynomialGenerator(int n) {
-		if(n == 1) {
-			GalloisNumber[] poly = {new GalloisNumber(0),new GalloisNumber(0)};
-			return poly;
+	private static int[] polynomialGenerator(int n) {
+		// coefficients highest degree first, the leading one stays 1
+		int[] poly = new int[n + 1];
+		poly[0] = 1;
+		for (int i = 0; i < n; i++) {
+			int root = GaloisField.exp(i);
+			for (int j = i + 1; j >= 1; j--) {
+				poly[j] ^= GaloisField.multiply(poly[j - 1], root);
+			}
 		}
-		GalloisNumber[] left = polynomialGenerator(n-1);
-		GalloisNumber[] right = {new GalloisNumber(n-1),new GalloisNumber(0)};
-		
-		GalloisNumber[] poly = new GalloisNumber[n+1];
-		poly[0] = right[0].mul(left[0]);
-		poly[n] = right[1];
-		
-		for(int i=1;i<n;i++) {
-			poly[i] = right[0].mul(left[i]).add(right[1].mul(left[i-1]));
+		int[] logs = new int[n];
+		for (int j = 0; j < n; j++) {
+			logs[j] = GaloisField.log(poly[j + 1]);
 		}
-		
-		return poly;
-		
-		
+		return logs;
 	}
 }
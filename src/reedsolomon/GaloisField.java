@@ -0,0 +1,74 @@
+package reedsolomon;
+
+/**
+ * Arithmetic tables of GF(256) with the QR code primitive polynomial
+ * x^8 + x^4 + x^3 + x^2 + 1 (285) and generator 2.
+ */
+final class GaloisField {
+
+	private static final int PRIMITIVE = 285;
+
+	/**
+	 * Value returned by {@link #log(int)} for 0: indexes the zero part of the
+	 * exponent table, so that a product with 0 is 0 without a branch
+	 */
+	static final int LOG_ZERO = 511;
+
+	/*
+	 * EXP[i] = 2^i, repeated on 510 entries so that the sum of two logarithms
+	 * never needs a modulo, followed by zeros for LOG_ZERO
+	 */
+	private static final int[] EXP = new int[1024];
+	private static final int[] LOG = new int[256];
+
+	static {
+		int n = 1;
+		for (int i = 0; i < 255; i++) {
+			EXP[i] = n;
+			EXP[i + 255] = n;
+			LOG[n] = i;
+			n <<= 1;
+			if (n > 255) {
+				n ^= PRIMITIVE;
+			}
+		}
+		LOG[0] = LOG_ZERO;
+	}
+
+	private GaloisField() {
+	}
+
+	/**
+	 * @param power a power of the generator, between 0 and 2 * {@link #LOG_ZERO}
+	 * @return 2^power, or 0 if power comes from the logarithm of 0
+	 */
+	static int exp(int power) {
+		return EXP[power];
+	}
+
+	/**
+	 * @param value an element of the field
+	 * @return its logarithm in base 2, or {@link #LOG_ZERO} for 0
+	 */
+	static int log(int value) {
+		return LOG[value];
+	}
+
+	static int multiply(int a, int b) {
+		return EXP[LOG[a] + LOG[b]];
+	}
+
+	static int divide(int a, int b) {
+		if (b == 0) {
+			throw new ArithmeticException("Division by zero in GF(256)");
+		}
+		if (a == 0) {
+			return 0;
+		}
+		return EXP[LOG[a] + 255 - LOG[b]];
+	}
+
+	static int inverse(int a) {
+		return divide(1, a);
+	}
+}
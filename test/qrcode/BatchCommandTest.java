@@ -0,0 +1,114 @@
+package qrcode;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import qrcode.QRCodeInfos.CorrectionLvl;
+import qrcode.decode.QRDecoder;
+
+class BatchCommandTest {
+
+	@TempDir
+	Path directory;
+
+	private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+	private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+	private int run(String input, String... args) {
+		InputStream stdin = new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8));
+		return BatchCommand.run(args, stdin, new PrintStream(out, true), new PrintStream(err, true));
+	}
+
+	@Test
+	void testPngDirectoryFromStdin() throws IOException {
+		Path output = directory.resolve("images");
+		String input = "HELLO\n\nhttps://example.com/product/1234\n";
+		assertEquals(BatchCommand.SUCCESS, run(input, "-o", output.toString(), "-t", "2", "-s", "1", "-b", "0", "-l", "M"));
+		assertTrue(out.toString().contains("Encoded 2 symbols"));
+		assertTrue(out.toString().contains("p99"));
+
+		BufferedImage image = ImageIO.read(output.resolve("000003.png").toFile());
+		QRMatrix expected = new EncoderContext(Segmentation.smallestVersion("https://example.com/product/1234".getBytes(StandardCharsets.ISO_8859_1), CorrectionLvl.M),
+				CorrectionLvl.M).encode("https://example.com/product/1234");
+		assertEquals(expected.getSize(), image.getWidth());
+		for (int y = 0; y < expected.getSize(); y++) {
+			for (int x = 0; x < expected.getSize(); x++) {
+				assertEquals(expected.isDark(x, y) ? MatrixConstruction.B : MatrixConstruction.W, image.getRGB(x, y));
+			}
+		}
+		assertFalse(Files.exists(output.resolve("000002.png")));
+	}
+
+	@Test
+	void testVerify() throws IOException {
+		Path output = directory.resolve("verified");
+		String input = "HELLO\n0123456789\nhttps://example.com/product/1234\n";
+		assertEquals(BatchCommand.SUCCESS, run(input, "-o", output.toString(), "-s", "3", "-l", "Q", "--verify"));
+		assertTrue(out.toString().contains("Encoded 3 symbols"));
+		BufferedImage image = ImageIO.read(output.resolve("000002.png").toFile());
+		assertEquals("0123456789", QRDecoder.decode(image).getText());
+	}
+
+	@Test
+	void testRejectsCharactersOutsideLatin1() throws IOException {
+		Path output = directory.resolve("latin1");
+		String input = "price 5\u20AC\ncaf\u00E9\n";
+		assertEquals(BatchCommand.FAILED_LINES, run(input, "-o", output.toString(), "--verify"));
+		assertTrue(out.toString().contains("Encoded 1 symbols"));
+		assertTrue(err.toString().contains("line 1: The line has characters outside ISO-8859-1"));
+		assertFalse(Files.exists(output.resolve("000001.png")));
+		assertEquals("caf\u00E9", QRDecoder.decode(ImageIO.read(output.resolve("000002.png").toFile())).getText());
+	}
+
+	@Test
+	void testSvgArchiveFromFile() throws IOException {
+		Path input = directory.resolve("labels.txt");
+		StringBuilder lines = new StringBuilder();
+		for (int i = 0; i < 30; i++) {
+			lines.append("LABEL ").append(i).append('\n');
+		}
+		// too long for version 1
+		lines.append("this line does not fit in a version 1 symbol\n");
+		Files.writeString(input, lines);
+		Path archive = directory.resolve("out/labels.zip");
+		assertEquals(BatchCommand.FAILED_LINES, run("", "-f", "svg", "-v", "1", "-o", archive.toString(), input.toString()));
+		assertTrue(err.toString().startsWith("line 31: "));
+
+		List<String> names = new ArrayList<>();
+		try (ZipInputStream zip = new ZipInputStream(Files.newInputStream(archive))) {
+			ZipEntry entry;
+			while ((entry = zip.getNextEntry()) != null) {
+				names.add(entry.getName());
+				assertTrue(new String(zip.readAllBytes(), StandardCharsets.UTF_8).contains("<path"));
+			}
+		}
+		assertEquals(30, names.size());
+		assertTrue(names.contains("000030.svg"));
+	}
+
+	@Test
+	void testUsage() {
+		assertEquals(BatchCommand.USAGE_ERROR, run("", "--level", "X"));
+		assertEquals(BatchCommand.USAGE_ERROR, run("", "-v", "41"));
+		assertEquals(BatchCommand.SUCCESS, run("", "--help"));
+		assertTrue(out.toString().startsWith("Usage"));
+	}
+}
@@ -0,0 +1,64 @@
+package qrcode;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import qrcode.QRCodeInfos.CorrectionLvl;
+
+class BatchEncoderTest {
+
+	@Test
+	void testEncodeAllMatchesSingleEncoding() {
+		List<String> payloads = new ArrayList<>();
+		for (int i = 0; i < 50; i++) {
+			payloads.add("LABEL-" + i + " batch " + (i * 7919));
+		}
+		List<QRMatrix> symbols;
+		try (BatchEncoder encoder = new BatchEncoder(4, CorrectionLvl.M, 3)) {
+			symbols = encoder.encodeAll(payloads);
+		}
+		assertEquals(payloads.size(), symbols.size());
+		for (int i = 0; i < payloads.size(); i++) {
+			boolean[] data = DataEncoding.mixedModeEncoding(payloads.get(i), 4, CorrectionLvl.M);
+			int mask = MatrixConstruction.findBestMasking(4, data, CorrectionLvl.M);
+			QRMatrix expected = MatrixConstruction.renderPackedQRCode(4, data, mask, CorrectionLvl.M);
+			assertEquals(expected, symbols.get(i));
+		}
+	}
+
+	@Test
+	void testPayloadTooLong() {
+		try (BatchEncoder encoder = new BatchEncoder(1, CorrectionLvl.H, 2)) {
+			List<String> payloads = List.of("ok", "this payload does not fit in a version 1 symbol");
+			assertThrows(IllegalArgumentException.class, () -> encoder.encodeAll(payloads));
+		}
+	}
+
+	@Test
+	void testFailureStopsWorkers() {
+		AtomicInteger read = new AtomicInteger();
+		Iterable<String> payloads = () -> new Iterator<String>() {
+			@Override
+			public boolean hasNext() {
+				return true;
+			}
+
+			@Override
+			public String next() {
+				return read.incrementAndGet() == 10 ? "this payload does not fit in a version 1 symbol" : "ok";
+			}
+		};
+		// the input never ends: the call only returns if the failure stops the workers
+		try (BatchEncoder encoder = new BatchEncoder(1, CorrectionLvl.H, 3)) {
+			assertThrows(IllegalArgumentException.class, () -> encoder.encodeAll(payloads, (index, payload, matrix) -> {
+			}));
+		}
+		assertTrue(read.get() >= 10);
+	}
+}
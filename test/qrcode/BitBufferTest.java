@@ -0,0 +1,46 @@
+package qrcode;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class BitBufferTest {
+
+	@Test
+	void testAppendAcrossWords() {
+		BitBuffer bits = new BitBuffer(8);
+		bits.append(0b0100, 4);
+		for (int i = 0; i < 20; i++) {
+			bits.append(0xABCDE, 20);
+		}
+		bits.appendBit(true);
+		assertEquals(4 + 400 + 1, bits.length());
+		bits.padToByte();
+		assertEquals(408, bits.length());
+		assertEquals(0x4A, bits.getByte(0));
+		assertEquals(0xBC, bits.getByte(1));
+		assertTrue(bits.getBit(404));
+		assertFalse(bits.getBit(405));
+		assertEquals(0xE8, bits.getByte(50));
+		assertArrayEquals(DataEncoding.bytesToBinaryArray(new int[] { 0x4A, 0xBC }), java.util.Arrays.copyOf(bits.toBooleanArray(), 16));
+	}
+
+	@Test
+	void testClearAndPlacement() {
+		BitBuffer bits = new BitBuffer();
+		bits.append(-1, 32);
+		bits.clear();
+		assertEquals(0, bits.length());
+		int[] codewords = { 0x40, 0x11, 0xEC, 0x11, 0xEC, 0x11, 0xEC, 0x11, 0xEC, 0x11, 0xEC, 0x11, 0xEC, 0x11, 0xEC, 0x11,
+				0xEC, 0x11, 0xEC };
+		int[] stream = DataEncoding.addErrorCorrectionBlocks(codewords, 1);
+		bits.appendBytes(stream, 0, stream.length);
+		assertThrows(IndexOutOfBoundsException.class, () -> bits.getBit(stream.length * 8));
+
+		QRMatrix fromBits = MatrixTemplates.newMatrix(1, 3);
+		DataPlacement.place(fromBits, bits);
+		QRMatrix fromBooleans = MatrixTemplates.newMatrix(1, 3);
+		DataPlacement.place(fromBooleans, DataEncoding.bytesToBinaryArray(stream));
+		assertEquals(fromBooleans, fromBits);
+	}
+}
@@ -3,9 +3,12 @@ package qrcode;
 import static org.junit.jupiter.api.Assertions.*;
 
 import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
 
 import org.junit.jupiter.api.Test;
 
+import qrcode.QRCodeInfos.CorrectionLvl;
+
 class DataEncodingTest {
 
 	private final String message = "Programming is a skill best acquired by practice.";
@@ -72,6 +75,38 @@ class DataEncodingTest {
 		assertArrayEquals(bybetAndError, res);
 	}
 
+	@Test
+	void testAddInformationsVersion10() {
+		int[] res = DataEncoding.addInformations(Arrays.copyOfRange(isoCode, 0, 2), 10);
+		assertArrayEquals(new int[] { 64, 0, 37, 7, 32 }, res);
+	}
+
+	@Test
+	void testCapacities() {
+		assertEquals(80, QRCodeInfos.getCodeWordsLength(4));
+		assertEquals(274, QRCodeInfos.getCodeWordsLength(10));
+		assertEquals(2956, QRCodeInfos.getCodeWordsLength(40));
+		assertEquals(2953, QRCodeInfos.getMaxInputLength(40));
+		assertArrayEquals(new int[] { 6, 30, 58, 86, 114, 142, 170 }, QRCodeInfos.getAlignmentPatternPositions(40));
+		assertEquals(0x07C94, QRCodeInfos.getVersionInformation(7));
+		assertEquals(9, QRCodeInfos.getCodeWordsLength(1, CorrectionLvl.H));
+		assertEquals(2334, QRCodeInfos.getCodeWordsLength(40, CorrectionLvl.M));
+		assertEquals(1666, QRCodeInfos.getCodeWordsLength(40, CorrectionLvl.Q));
+		assertEquals(81, QRCodeInfos.getNumberOfBlocks(40, CorrectionLvl.H));
+	}
+
+	@Test
+	void testAddErrorCorrectionBlocks() {
+		int[] data = DataEncoding.fillSequence(byteCodeV1, QRCodeInfos.getCodeWordsLength(1));
+		assertArrayEquals(DataEncoding.addErrorCorrection(data, 7), DataEncoding.addErrorCorrectionBlocks(data, 1));
+
+		int version = 15;
+		data = DataEncoding.fillSequence(DataEncoding.addInformations(isoCode, version), QRCodeInfos.getCodeWordsLength(version));
+		int[] serial = DataEncoding.addErrorCorrectionBlocks(data, version);
+		assertEquals(QRCodeInfos.getTotalCodeWordsLength(version), serial.length);
+		assertArrayEquals(serial, DataEncoding.addErrorCorrectionBlocks(data, version, ForkJoinPool.commonPool()));
+	}
+
 	@Test
 	void testToBinaryArray() {
 		boolean[] res = DataEncoding.bytesToBinaryArray(bybetAndError);
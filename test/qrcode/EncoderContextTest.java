@@ -0,0 +1,63 @@
+package qrcode;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import qrcode.QRCodeInfos.CorrectionLvl;
+
+class EncoderContextTest {
+
+	private static QRMatrix expected(boolean[] data, int version, CorrectionLvl level) {
+		int mask = MatrixConstruction.findBestMasking(version, data, level);
+		return MatrixConstruction.renderPackedQRCode(version, data, mask, level);
+	}
+
+	@Test
+	void testMatchesPipeline() {
+		String[] inputs = { "", "0123456789", "HTTPS://EXAMPLE.COM/ORDER/42", "Mixed input 123456789 \u00FF", "a\u20ACb\uD83D\uDE00" };
+		for (int version : new int[] { 4, 7, 12 }) {
+			for (CorrectionLvl level : CorrectionLvl.values()) {
+				EncoderContext context = new EncoderContext(version, level);
+				for (String input : inputs) {
+					assertEquals(expected(DataEncoding.mixedModeEncoding(input, version, level), version, level),
+							context.encode(input));
+					if (!input.isEmpty()) {
+						assertEquals(expected(DataEncoding.byteModeEncoding(input, version, level), version, level),
+								context.encodeByteMode(input));
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	void testCapacity() {
+		EncoderContext context = new EncoderContext(1, CorrectionLvl.L);
+		String digits = "12345678901234567890123456789012345678901";
+		context.encode(digits);
+		assertThrows(IllegalArgumentException.class, () -> context.encode(digits + "2"));
+		assertThrows(IllegalArgumentException.class, () -> context.encode("this string has 18"));
+		// byte mode truncates like DataEncoding.byteModeEncoding
+		String truncated = "this string is too long for version 1";
+		assertEquals(expected(DataEncoding.byteModeEncoding(truncated, 1), 1, CorrectionLvl.L), context.encodeByteMode(truncated));
+	}
+
+	@Test
+	void testEncodeSmallest() {
+		QRMatrix matrix = EncoderContext.encodeSmallest("HTTPS://EXAMPLE.COM/ORDER/42", CorrectionLvl.Q);
+		assertEquals(2, matrix.getVersion());
+		assertEquals(new EncoderContext(2, CorrectionLvl.Q).encode("HTTPS://EXAMPLE.COM/ORDER/42"), matrix);
+		assertEquals(1, EncoderContext.encodeSmallest("", CorrectionLvl.H).getVersion());
+		String tooLong = new String(new char[2954]).replace('\0', 'x');
+		assertThrows(IllegalArgumentException.class, () -> EncoderContext.encodeSmallest(tooLong, CorrectionLvl.L));
+		assertThrows(IllegalArgumentException.class, () -> EncoderContext.encodeSmallest("a\u20ACb", CorrectionLvl.L));
+		assertEquals(1, EncoderContext.encodeSmallest("caf\u00E9", CorrectionLvl.L).getVersion());
+
+		// the matrices are copies of the context reused for the version and level
+		QRMatrix first = EncoderContext.encodeSmallest("first", CorrectionLvl.M);
+		QRMatrix second = EncoderContext.encodeSmallest("second", CorrectionLvl.M);
+		assertNotSame(first, second);
+		assertEquals(new EncoderContext(1, CorrectionLvl.M).encode("first"), first);
+	}
+}
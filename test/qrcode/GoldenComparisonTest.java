@@ -0,0 +1,158 @@
+package qrcode;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import qrcode.GoldenComparison.Report;
+import qrcode.QRCodeInfos.CorrectionLvl;
+import qrcode.GoldenComparison.Result;
+
+class GoldenComparisonTest {
+
+	private static final Path IMAGES = Paths.get(System.getProperty("user.dir"), "images");
+
+	@TempDir
+	Path directory;
+
+	private static int[][] patterns(int version) {
+		int size = QRCodeInfos.getMatrixSize(version);
+		int[][] matrix = new int[size][size];
+		MatrixConstruction.addFinderPatterns(matrix);
+		MatrixConstruction.addAlignmentPatterns(matrix, version);
+		MatrixConstruction.addTimingPatterns(matrix);
+		MatrixConstruction.addDarkModule(matrix);
+		return matrix;
+	}
+
+	private static int[][] format(int version, int mask) {
+		int size = QRCodeInfos.getMatrixSize(version);
+		int[][] matrix = new int[size][size];
+		MatrixConstruction.addFormatInformation(matrix, mask);
+		return matrix;
+	}
+
+	@Test
+	void testCompare() throws IOException {
+		assertEquals(0, GoldenComparison.compare(patterns(1), IMAGES.resolve("patterns.png")));
+		int[][] matrix = patterns(1);
+		matrix[10][10] = MatrixConstruction.W;
+		matrix[3][3] = 0;
+		assertEquals(2, GoldenComparison.compare(matrix, IMAGES.resolve("patterns.png")));
+		assertEquals(-1, GoldenComparison.compare(patterns(2), IMAGES.resolve("patterns.png")));
+	}
+
+	@Test
+	void testCompareIsExact() throws IOException {
+		int[][] matrix = patterns(1);
+		assertTrue(Helpers.compare(matrix, "patterns"));
+		// neither dark nor light, like the empty module of the golden image, but not
+		// its color
+		matrix[10][10] = 0x12345678;
+		assertEquals(1, GoldenComparison.mismatches(matrix, Helpers.readMatrix("patterns")));
+		assertEquals(1, GoldenComparison.compare(matrix, IMAGES.resolve("patterns.png")));
+		assertFalse(Helpers.compare(matrix, "patterns"));
+		// the same in the second word of a row
+		int[][] large = patterns(15);
+		int[][] other = patterns(15);
+		large[70][40] = 0x12345678;
+		assertEquals(1, GoldenComparison.mismatches(large, other));
+		other[70][40] = 0x12345678;
+		assertEquals(0, GoldenComparison.mismatches(large, other));
+	}
+
+	@Test
+	void testComparePacked() throws IOException {
+		QRMatrix matrix = QRMatrix.fromArray(Helpers.readMatrix("testV1M0"));
+		assertEquals(0, GoldenComparison.compare(matrix, IMAGES.resolve("testV1M0.png")));
+		matrix.setDark(4, 17, !matrix.isDark(4, 17));
+		assertEquals(1, GoldenComparison.compare(matrix, IMAGES.resolve("testV1M0.png")));
+		assertEquals(-1, GoldenComparison.compare(matrix, IMAGES.resolve("patternsv4.png")));
+		// the empty modules of a golden image never match a finished symbol
+		assertTrue(GoldenComparison.compare(QRMatrix.forVersion(1), IMAGES.resolve("patterns.png")) > 0);
+
+		// 77 modules: every row spans two words
+		QRMatrix large = new EncoderContext(15, CorrectionLvl.L).encode("golden").copy();
+		Path golden = directory.resolve("large.png");
+		Helpers.writeMatrix(golden.toFile(), large.toArray());
+		assertEquals(0, GoldenComparison.compare(large, golden));
+		assertEquals(0, GoldenComparison.compare(large.toArray(), golden));
+		large.setDark(63, 0, !large.isDark(63, 0));
+		large.setDark(64, 70, !large.isDark(64, 70));
+		large.setDark(76, 76, !large.isDark(76, 76));
+		assertEquals(3, GoldenComparison.compare(large, golden));
+		assertEquals(3, GoldenComparison.compare(large.toArray(), golden));
+	}
+
+	@Test
+	void testMismatchesAcrossWords() {
+		// 77 modules: every row spans two words
+		int[][] expected = patterns(15);
+		int[][] actual = patterns(15);
+		assertEquals(0, GoldenComparison.mismatches(actual, expected));
+		actual[63][0] = MatrixConstruction.W;
+		actual[64][70] = MatrixConstruction.B;
+		actual[76][76] = MatrixConstruction.B;
+		assertEquals(3, GoldenComparison.mismatches(actual, expected));
+	}
+
+	@Test
+	void testCompareDirectory() throws IOException {
+		Path goldens = directory.resolve("goldens");
+		Files.createDirectories(goldens);
+		for (String name : new String[] { "patterns", "patternsv4", "formatV1M0", "formatV4M5", "testV1M0" }) {
+			Files.copy(IMAGES.resolve(name + ".png"), goldens.resolve(name + ".png"));
+		}
+		Path diffs = directory.resolve("diffs");
+		Report report = GoldenComparison.compareDirectory(goldens, name -> {
+			switch (name) {
+			case "patterns":
+				return patterns(1);
+			case "patternsv4":
+				return patterns(4);
+			case "formatV1M0":
+				return format(1, 0);
+			case "formatV4M5":
+				return format(4, 4);
+			default:
+				return null;
+			}
+		}, diffs, 4);
+
+		assertEquals(4, report.getResults().size());
+		assertEquals("formatV1M0", report.getResults().get(0).getName());
+		assertFalse(report.isSuccess());
+		List<Result> mismatches = report.getMismatches();
+		assertEquals(1, mismatches.size());
+		Result mismatch = mismatches.get(0);
+		assertEquals("formatV4M5", mismatch.getName());
+		assertTrue(mismatch.getMismatches() > 0);
+		assertNull(mismatch.getError());
+		assertEquals(diffs.resolve("formatV4M5.diff.png"), mismatch.getDiffImage());
+		assertTrue(Files.isRegularFile(mismatch.getDiffImage()));
+		try (Stream<Path> written = Files.list(diffs)) {
+			assertEquals(1, written.count());
+		}
+		assertTrue(report.toString().contains("formatV4M5"));
+	}
+
+	@Test
+	void testProducerFailure() throws IOException {
+		Files.copy(IMAGES.resolve("patterns.png"), directory.resolve("patterns.png"));
+		Report report = GoldenComparison.compareDirectory(directory, name -> {
+			throw new IllegalStateException("broken");
+		}, null, 2);
+		Result result = report.getResults().get(0);
+		assertFalse(result.isMatch());
+		assertTrue(result.getError().contains("broken"));
+		assertNull(result.getDiffImage());
+	}
+}
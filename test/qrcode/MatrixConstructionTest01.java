@@ -4,6 +4,8 @@ import static org.junit.jupiter.api.Assertions.*;
 
 import org.junit.jupiter.api.Test;
 
+import qrcode.QRCodeInfos.CorrectionLvl;
+
 class MatrixConstructionTest01 {
 	
 
@@ -44,10 +46,31 @@ class MatrixConstructionTest01 {
 		assertTrue(Helpers.compare(matrix,"formatV4M5"),"The format information is wrong. Run Debug.java for more informations");
 	}
 	
+	@Test
+	void testFormatSequenceLevels() {
+		boolean[] expected = { true, false, true, false, true, false, false, false, false, false, true, false, false, true, false };
+		assertArrayEquals(expected, QRCodeInfos.getFormatSequence(0, CorrectionLvl.M));
+		for (CorrectionLvl level : CorrectionLvl.values()) {
+			for (int mask = 0; mask < 8; mask++) {
+				int[][] packed = MatrixTemplates.newMatrix(2, mask, level).toArray(true);
+				assertArrayEquals(MatrixConstruction.constructMatrix(2, mask, level), packed);
+			}
+		}
+	}
+
 	@Test
 	void testConstructMatrix() {
 		int[][] matrix = MatrixConstruction.constructMatrix(4, 5);
 		assertTrue(Helpers.compare(matrix,"noDataV4M5"),"The format information is wrong. Run Debug.java for more informations");
 	}
 
+	@Test
+	void testTemplateMatchesConstructMatrix() {
+		for (int mask = 0; mask < 8; mask++) {
+			int[][] packed = MatrixTemplates.newMatrix(4, mask).toArray(true);
+			assertArrayEquals(MatrixConstruction.constructMatrix(4, mask), packed);
+		}
+		assertTrue(Helpers.compare(MatrixConstruction.constructMatrix(4, 5),"noDataV4M5"),"The template has been modified");
+	}
+
 }
@@ -32,6 +32,11 @@ class MatrixConstructionTest02 {
 		assertTrue(Helpers.compare(res, "testV1M0"),"Matrix is not what expected. Run Debug.java for more informations");
 	}
 
+	@Test
+	void testFindBestMaskingParallel() {
+		assertEquals(MatrixConstruction.findBestMasking(1, data), MatrixConstruction.findBestMaskingParallel(1, data));
+	}
+
 	@Test
 	void testMaskColor() {
 		assertEquals(-1 , MatrixConstruction.maskColor(2, 0, true, 0));
@@ -46,6 +51,36 @@ class MatrixConstructionTest02 {
 		assertTrue(Helpers.compare(matrix, "dataMatEmpty"),"The data bit are not placed as expected. Use Debug.java for more informations");
 	}
 	
+	@Test
+	void testPlacementIndex() {
+		for (int version = 1; version <= 4; version++) {
+			int[][] expected = MatrixConstruction.constructMatrix(version, 0);
+			MatrixConstruction.addDataInformation(expected, data, -1);
+			QRMatrix packed = MatrixTemplates.newMatrix(version, 0);
+			DataPlacement.place(packed, data);
+			assertArrayEquals(expected, packed.toArray());
+		}
+		assertEquals(208, DataPlacement.getDataModuleCount(1));
+		int[] index = DataPlacement.getPlacementIndex(2);
+		for (int i = 0; i < index.length; i++) {
+			assertEquals(i, DataPlacement.getBitIndex(2, index[i] % 25, index[i] / 25));
+		}
+		assertEquals(-1, DataPlacement.getBitIndex(2, 0, 0));
+	}
+
+	@Test
+	void testMaskPatterns() {
+		for (int mask = 0; mask < 8; mask++) {
+			int[][] expected = MatrixConstruction.constructMatrix(3, mask);
+			MatrixConstruction.addDataInformation(expected, data, mask);
+			QRMatrix packed = MatrixTemplates.newMatrix(3, mask);
+			DataPlacement.place(packed, data);
+			MaskPatterns.apply(packed, mask);
+			assertArrayEquals(expected, packed.toArray());
+		}
+		assertEquals(-16777216, MatrixConstruction.maskColor(0, 0, true, 8));
+	}
+
 	@Test
 	void testAddDataInformationWithNoData() {
 		int[][] matrix = Helpers.readMatrix("NoDataV1M0");
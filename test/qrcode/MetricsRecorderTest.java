@@ -0,0 +1,54 @@
+package qrcode;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import qrcode.MetricsListener.Stage;
+import qrcode.QRCodeInfos.CorrectionLvl;
+
+class MetricsRecorderTest {
+
+	@Test
+	void testHistogram() {
+		Histogram histogram = new Histogram();
+		assertEquals(0, histogram.getPercentile(50));
+		for (int i = 1; i <= 1000; i++) {
+			histogram.record(i);
+		}
+		assertEquals(1000, histogram.getCount());
+		assertEquals(1000, histogram.getMax());
+		assertEquals(500.5, histogram.getMean(), 1e-9);
+		long median = histogram.getPercentile(50);
+		assertTrue(median >= 500 && median <= 500 * 9 / 8, "median " + median);
+		long p99 = histogram.getPercentile(99);
+		assertTrue(p99 >= 990 && p99 <= 1000, "p99 " + p99);
+		assertEquals(1, histogram.getPercentile(0));
+	}
+
+	@Test
+	void testRecordsStagesAndMasks() {
+		MetricsRecorder recorder = new MetricsRecorder();
+		Metrics.setListener(recorder);
+		try {
+			boolean[] data = DataEncoding.byteModeEncoding("metrics", 2, CorrectionLvl.M);
+			int mask = MatrixConstruction.findBestMasking(2, data, CorrectionLvl.M);
+			new EncoderContext(3, CorrectionLvl.L).encode("METRICS 42");
+			Rasterizer.rasterize(MatrixTemplates.newMatrix(1, 0), 2, 4, java.awt.image.BufferedImage.TYPE_BYTE_GRAY);
+
+			for (Stage stage : Stage.values()) {
+				if (stage != Stage.IO) {
+					assertTrue(recorder.getLatencies(stage).getCount() > 0, stage.toString());
+				}
+			}
+			assertEquals(2, recorder.getCounter(Metrics.SYMBOLS));
+			assertEquals(7 + 10, recorder.getCounter(Metrics.INPUT_BYTES));
+			assertTrue(recorder.getMaskCount(mask) >= 1);
+			assertEquals(2, recorder.getPenalties().getCount());
+			assertTrue(recorder.report().contains("MASK_SEARCH"));
+		} finally {
+			Metrics.setListener(null);
+		}
+		assertSame(MetricsListener.NOOP, Metrics.getListener());
+	}
+}
@@ -0,0 +1,49 @@
+package qrcode;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class PenaltyScorerTest {
+
+	@Test
+	void testBreakdownOfLightMatrix() {
+		PenaltyScorer scorer = new PenaltyScorer();
+		int total = scorer.score(new QRMatrix(21));
+		// 42 runs of 21 modules, 20x20 blocks, no pattern, 0% of dark modules
+		assertEquals(42 * 19, scorer.getRunPenalty());
+		assertEquals(400 * 3, scorer.getBlockPenalty());
+		assertEquals(0, scorer.getFinderPenalty());
+		assertEquals(90, scorer.getBalancePenalty());
+		assertEquals(2088, total);
+	}
+
+	@Test
+	void testFinderPatterns() {
+		QRMatrix matrix = new QRMatrix(21);
+		int[] dark = { 0, 2, 3, 4, 6 };
+		for (int x : dark) {
+			matrix.setDark(x, 10, true);
+		}
+		PenaltyScorer scorer = new PenaltyScorer();
+		scorer.score(matrix);
+		// preceded by the light border, followed by light modules
+		assertEquals(40, scorer.getFinderPenalty());
+	}
+
+	@Test
+	void testLargeVersion() {
+		QRMatrix matrix = new QRMatrix(177);
+		for (int y = 0; y < 177; y++) {
+			for (int x = 0; x < 177; x++) {
+				matrix.setDark(x, y, ((x + y) & 1) == 0);
+			}
+		}
+		PenaltyScorer scorer = new PenaltyScorer();
+		scorer.score(matrix);
+		assertEquals(0, scorer.getRunPenalty());
+		assertEquals(0, scorer.getBlockPenalty());
+		assertEquals(0, scorer.getFinderPenalty());
+	}
+
+}
@@ -0,0 +1,63 @@
+package qrcode;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Test;
+
+import qrcode.QRCodeInfos.CorrectionLvl;
+
+class PngWriterTest {
+
+	private static BufferedImage read(ByteArrayOutputStream out) throws IOException {
+		return ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+	}
+
+	@Test
+	void testBlackAndWhite() throws IOException {
+		QRMatrix matrix = new EncoderContext(3, CorrectionLvl.Q).encode("PNG WRITER 1234");
+		int scale = 3;
+		int border = 4;
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (PngWriter writer = new PngWriter(scale, border, 1, 9)) {
+			writer.write(matrix, out);
+			// the writer is reusable
+			out.reset();
+			writer.write(matrix, out);
+		}
+		BufferedImage image = read(out);
+		int size = (matrix.getSize() + 2 * border) * scale;
+		assertEquals(size, image.getWidth());
+		assertEquals(size, image.getHeight());
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				int mx = x / scale - border;
+				int my = y / scale - border;
+				boolean inside = mx >= 0 && my >= 0 && mx < matrix.getSize() && my < matrix.getSize();
+				int expected = inside && matrix.isDark(mx, my) ? MatrixConstruction.B : MatrixConstruction.W;
+				assertEquals(expected, image.getRGB(x, y), "pixel " + x + "," + y);
+			}
+		}
+	}
+
+	@Test
+	void testGrayscaleArray() throws IOException {
+		int[][] matrix = Helpers.readMatrix("testV1M0");
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (PngWriter writer = new PngWriter(1, 0, 8, 6)) {
+			writer.write(matrix, out);
+		}
+		BufferedImage image = read(out);
+		for (int x = 0; x < matrix.length; x++) {
+			for (int y = 0; y < matrix.length; y++) {
+				assertEquals(matrix[x][y], image.getRGB(x, y));
+			}
+		}
+	}
+}
@@ -0,0 +1,42 @@
+package qrcode;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class QRMatrixTest {
+
+	@Test
+	void testRoundTripWithData() {
+		int[][] matrix = Helpers.readMatrix("testV1M0");
+		QRMatrix packed = QRMatrix.fromArray(matrix);
+		assertEquals(21, packed.getSize());
+		assertEquals(1, packed.getVersion());
+		assertArrayEquals(matrix, packed.toArray());
+	}
+
+	@Test
+	void testRoundTripKeepsEmptyModules() {
+		int[][] matrix = MatrixConstruction.constructMatrix(4, 5);
+		QRMatrix packed = QRMatrix.fromArray(matrix);
+		assertArrayEquals(matrix, packed.toArray(true));
+		assertTrue(packed.isFunction(0, 0));
+		assertFalse(packed.isFunction(20, 20));
+	}
+
+	@Test
+	void testSetAndCopy() {
+		QRMatrix packed = new QRMatrix(177);
+		packed.setDark(176, 3, true);
+		packed.setFunction(64, 100, true);
+		assertTrue(packed.isDark(176, 3));
+		assertTrue(packed.isFunction(64, 100));
+		assertEquals(2, packed.countDark());
+		QRMatrix copy = packed.copy();
+		assertEquals(packed, copy);
+		copy.setDark(176, 3, false);
+		assertNotEquals(packed, copy);
+		assertEquals(1, copy.countDark());
+	}
+
+}
@@ -0,0 +1,41 @@
+package qrcode;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.image.BufferedImage;
+
+import org.junit.jupiter.api.Test;
+
+import qrcode.QRCodeInfos.CorrectionLvl;
+
+class RasterizerTest {
+
+	private static void assertPixels(QRMatrix matrix, BufferedImage image, int scale, int border) {
+		int size = (matrix.getSize() + 2 * border) * scale;
+		assertEquals(size, image.getWidth());
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				int mx = x / scale - border;
+				int my = y / scale - border;
+				boolean inside = mx >= 0 && my >= 0 && mx < matrix.getSize() && my < matrix.getSize();
+				int expected = inside && matrix.isDark(mx, my) ? MatrixConstruction.B : MatrixConstruction.W;
+				assertEquals(expected, image.getRGB(x, y), "pixel " + x + "," + y);
+			}
+		}
+	}
+
+	@Test
+	void testBinaryAndGray() {
+		QRMatrix matrix = new EncoderContext(2, CorrectionLvl.H).encode("RASTER");
+		// scales not multiple of 8 exercise the partial bytes of the binary rows
+		int[] scales = { 1, 3, 8, 11 };
+		BufferedImage[] binary = Rasterizer.rasterize(matrix, 4, BufferedImage.TYPE_BYTE_BINARY, scales);
+		BufferedImage[] gray = Rasterizer.rasterize(matrix, 4, BufferedImage.TYPE_BYTE_GRAY, scales);
+		for (int i = 0; i < scales.length; i++) {
+			assertPixels(matrix, binary[i], scales[i], 4);
+			assertPixels(matrix, gray[i], scales[i], 4);
+		}
+		assertThrows(IllegalArgumentException.class,
+				() -> Rasterizer.rasterize(matrix, 2, 0, BufferedImage.TYPE_INT_ARGB));
+	}
+}
@@ -0,0 +1,120 @@
+package qrcode;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import qrcode.QRCodeInfos.CorrectionLvl;
+import qrcode.QRCodeInfos.Mode;
+
+class SegmentationTest {
+
+	private static List<Segment> segments(String input, int version) {
+		return Segmentation.optimalSegments(input.getBytes(StandardCharsets.ISO_8859_1), version);
+	}
+
+	@Test
+	void testSingleMode() {
+		List<Segment> res = segments("0123456789", 1);
+		assertEquals(1, res.size());
+		assertEquals(Mode.NUMERIC, res.get(0).getMode());
+		assertEquals(4 + 10 + 34, Segmentation.getBitLength(res, 1));
+		assertEquals(Mode.ALPHANUMERIC, segments("HELLO WORLD", 1).get(0).getMode());
+		assertEquals(Mode.BYTE, segments("hello", 1).get(0).getMode());
+		assertTrue(segments("", 1).isEmpty());
+	}
+
+	@Test
+	void testMixedModes() {
+		List<Segment> res = segments("HTTPS://EXAMPLE.COM/ORDER/123456789012", 1);
+		assertEquals(2, res.size());
+		assertEquals(Mode.ALPHANUMERIC, res.get(0).getMode());
+		assertEquals(26, res.get(0).getLength());
+		assertEquals(Mode.NUMERIC, res.get(1).getMode());
+		assertEquals(26, res.get(1).getStart());
+		assertEquals(210, Segmentation.getBitLength(res, 1));
+
+		// a short run of digits is not worth a new header
+		assertEquals(1, segments("ab1cd", 1).size());
+	}
+
+	@Test
+	void testMixedModeEncoding() {
+		String message = "Programming is a skill best acquired by practice.";
+		assertArrayEquals(DataEncoding.byteModeEncoding(message, 4),
+				DataEncoding.mixedModeEncoding(message, 4, CorrectionLvl.L));
+		assertThrows(IllegalArgumentException.class, () -> DataEncoding.mixedModeEncoding(message, 1, CorrectionLvl.L));
+		// 41 digits fit in a version 1 with level L, 17 bytes would not
+		assertEquals(26 * 8, DataEncoding.mixedModeEncoding("12345678901234567890123456789012345678901", 1, CorrectionLvl.L).length);
+	}
+
+	@Test
+	void testSmallestVersion() {
+		byte[] digits = "12345678901234567890123456789012345678901".getBytes(StandardCharsets.ISO_8859_1);
+		assertEquals(1, Segmentation.smallestVersion(digits, CorrectionLvl.L));
+		assertEquals(2, Segmentation.smallestVersion(Arrays.copyOf(digits, 42), CorrectionLvl.L));
+		assertEquals(2, Segmentation.smallestVersion(digits, CorrectionLvl.M));
+		assertThrows(IllegalArgumentException.class, () -> Segmentation.smallestVersion(new byte[3000], CorrectionLvl.L));
+	}
+
+	@Test
+	void testSmallestVersionMatchesSegmentation() {
+		Random random = new Random(25);
+		String alphabet = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ $%*+-./:abcdefghijklmnopqrstuvwxyz";
+		for (int i = 0; i < 300; i++) {
+			int length = random.nextInt(2000);
+			// runs of a single class of characters so that every segmentation occurs
+			byte[] data = new byte[length];
+			int classEnd = 0;
+			int chars = 0;
+			for (int j = 0; j < length; j++) {
+				if (j == classEnd) {
+					chars = new int[] { 10, 45, alphabet.length() }[random.nextInt(3)];
+					classEnd = j + 1 + random.nextInt(60);
+				}
+				data[j] = (byte) alphabet.charAt(random.nextInt(chars));
+			}
+			for (CorrectionLvl level : CorrectionLvl.values()) {
+				int expected = -1;
+				for (int v = 1; v <= QRCodeInfos.getMaxVersion() && expected < 0; v++) {
+					if (Segmentation.getBitLength(Segmentation.optimalSegments(data, v), v) <= QRCodeInfos.getCodeWordsLength(v, level) * 8) {
+						expected = v;
+					}
+				}
+				if (expected < 0) {
+					assertThrows(IllegalArgumentException.class, () -> Segmentation.smallestVersion(data, level));
+				} else {
+					assertEquals(expected, Segmentation.smallestVersion(data, level));
+				}
+			}
+		}
+	}
+
+	@Test
+	void testSmallestVersionCapacity() {
+		// the largest inputs of each mode fit in version 40 with level L, one more character does not
+		for (Mode mode : Mode.values()) {
+			int capacity = QRCodeInfos.getCapacity(QRCodeInfos.getMaxVersion(), CorrectionLvl.L, mode);
+			byte[] data = new byte[capacity + 1];
+			Arrays.fill(data, (byte) (mode == Mode.NUMERIC ? '7' : mode == Mode.ALPHANUMERIC ? 'Q' : 'q'));
+			assertEquals(40, Segmentation.smallestVersion(Arrays.copyOf(data, capacity), CorrectionLvl.L));
+			IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+					() -> Segmentation.smallestVersion(data, CorrectionLvl.L));
+			assertTrue(e.getMessage().contains(capacity + " characters in " + mode));
+		}
+		assertEquals(7089, QRCodeInfos.getCapacity(40, CorrectionLvl.L, Mode.NUMERIC));
+		assertEquals(4296, QRCodeInfos.getCapacity(40, CorrectionLvl.L, Mode.ALPHANUMERIC));
+		assertEquals(2953, QRCodeInfos.getCapacity(40, CorrectionLvl.L, Mode.BYTE));
+		assertEquals(1273, QRCodeInfos.getCapacity(40, CorrectionLvl.H, Mode.BYTE));
+		assertEquals(17, QRCodeInfos.getCapacity(1, CorrectionLvl.H, Mode.NUMERIC));
+		for (int v = 1; v <= QRCodeInfos.getMaxVersion(); v++) {
+			assertEquals(QRCodeInfos.getMaxInputLength(v, CorrectionLvl.M), QRCodeInfos.getCapacity(v, CorrectionLvl.M, Mode.BYTE));
+		}
+	}
+
+}
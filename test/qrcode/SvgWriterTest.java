@@ -0,0 +1,47 @@
+package qrcode;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+
+class SvgWriterTest {
+
+	@Test
+	void testRunsCoverDarkModules() throws IOException {
+		int[][] array = Helpers.readMatrix("testV1M0");
+		QRMatrix matrix = QRMatrix.fromArray(array);
+		StringWriter out = new StringWriter();
+		new SvgWriter(2, 0.5, "mm").write(array, out);
+		String svg = out.toString();
+		assertTrue(svg.contains("viewBox=\"0 0 25 25\""));
+		assertTrue(svg.contains("width=\"12.5mm\""));
+
+		QRMatrix drawn = new QRMatrix(matrix.getSize());
+		Matcher run = Pattern.compile("M(\\d+),(\\d+)h(\\d+)v1h-(\\d+)z").matcher(svg);
+		int runs = 0;
+		while (run.find()) {
+			int x = Integer.parseInt(run.group(1)) - 2;
+			int y = Integer.parseInt(run.group(2)) - 2;
+			int length = Integer.parseInt(run.group(3));
+			assertEquals(length, Integer.parseInt(run.group(4)));
+			// runs are maximal
+			assertTrue(x == 0 || !matrix.isDark(x - 1, y));
+			assertTrue(x + length == matrix.getSize() || !matrix.isDark(x + length, y));
+			for (int i = x; i < x + length; i++) {
+				drawn.setDark(i, y, true);
+			}
+			runs++;
+		}
+		assertTrue(runs < matrix.countDark());
+		for (int y = 0; y < matrix.getSize(); y++) {
+			for (int x = 0; x < matrix.getSize(); x++) {
+				assertEquals(matrix.isDark(x, y), drawn.isDark(x, y));
+			}
+		}
+	}
+}
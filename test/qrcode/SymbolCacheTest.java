@@ -0,0 +1,100 @@
+package qrcode;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import qrcode.QRCodeInfos.CorrectionLvl;
+import qrcode.SymbolCache.Key;
+
+public class SymbolCacheTest {
+
+	private static Key key(String payload) {
+		return SymbolCache.key(payload.getBytes(StandardCharsets.ISO_8859_1), 2, CorrectionLvl.M, SymbolCache.BEST_MASK);
+	}
+
+	@Test
+	void testKeys() {
+		assertEquals(key("abc"), key("abc"));
+		assertEquals(key("abc").hashCode(), key("abc").hashCode());
+		assertNotEquals(key("abc"), key("abd"));
+		byte[] payload = { 'a' };
+		assertNotEquals(SymbolCache.key(payload, 2, CorrectionLvl.M, 3), SymbolCache.key(payload, 2, CorrectionLvl.M, 4));
+		assertNotEquals(SymbolCache.key(payload, 2, CorrectionLvl.M, 3), SymbolCache.key(payload, 2, CorrectionLvl.Q, 3));
+		assertNotEquals(SymbolCache.key(payload, 2, CorrectionLvl.M, 3), SymbolCache.key(payload, 3, CorrectionLvl.M, 3));
+	}
+
+	@Test
+	void testHitsAndMisses() {
+		SymbolCache cache = new SymbolCache(1 << 20);
+		EncoderContext context = new EncoderContext(2, CorrectionLvl.M);
+		AtomicInteger encodings = new AtomicInteger();
+		QRMatrix first = cache.getMatrix(key("hello"), key -> {
+			encodings.incrementAndGet();
+			return context.encode("hello").copy();
+		});
+		assertEquals(context.encode("hello"), first);
+		QRMatrix second = cache.getMatrix(key("hello"), key -> {
+			encodings.incrementAndGet();
+			return context.encode("hello").copy();
+		});
+		assertSame(first, second);
+		assertEquals(1, encodings.get());
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+
+		assertNull(cache.getImage(key("hello"), "png/4/4"));
+		byte[] image = { 1, 2, 3 };
+		cache.putImage(key("hello"), "png/4/4", image);
+		assertArrayEquals(image, cache.getImage(key("hello"), "png/4/4"));
+		assertNull(cache.getImage(key("hello"), "svg/4"));
+		assertSame(first, cache.getMatrix(key("hello")));
+		assertEquals(1, cache.size());
+		assertEquals(2, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+		assertEquals(1, cache.getImageHitCount());
+		assertEquals(2, cache.getImageMissCount());
+		assertEquals(2.0 / 3, cache.getHitRate());
+		assertEquals(1.0 / 3, cache.getImageHitRate());
+
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getWeight());
+		assertNull(cache.getMatrix(key("hello")));
+	}
+
+	@Test
+	void testEviction() {
+		QRMatrix matrix = QRMatrix.forVersion(2);
+		SymbolCache cache = new SymbolCache(4096, 1);
+		for (int i = 0; i < 100; i++) {
+			cache.putMatrix(key("payload " + i), matrix);
+		}
+		assertEquals(4096 / (128 + 10 + 8 * matrix.modules().length), cache.size());
+		assertEquals(100 - cache.size(), cache.getEvictionCount());
+		// the least recently used entries are evicted first
+		assertSame(matrix, cache.getMatrix(key("payload 99")));
+		assertNull(cache.getMatrix(key("payload 0")));
+		int size = cache.size();
+		cache.getMatrix(key("payload " + (100 - size)));
+		cache.putMatrix(key("extra"), matrix);
+		assertSame(matrix, cache.getMatrix(key("payload " + (100 - size))));
+		assertNull(cache.getMatrix(key("payload " + (101 - size))));
+
+		// entries larger than the whole cache are ignored
+		cache.putImage(key("large"), "png", new byte[8192]);
+		assertNull(cache.getImage(key("large"), "png"));
+		assertEquals(size, cache.size());
+
+		SymbolCache disabled = new SymbolCache(0);
+		disabled.putMatrix(key("a"), matrix);
+		assertEquals(0, disabled.size());
+	}
+}
@@ -0,0 +1,127 @@
+package qrcode.decode;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.image.BufferedImage;
+
+import org.junit.jupiter.api.Test;
+
+import qrcode.DataEncoding;
+import qrcode.EncoderContext;
+import qrcode.Helpers;
+import qrcode.MatrixConstruction;
+import qrcode.QRCodeInfos.CorrectionLvl;
+import qrcode.QRMatrix;
+import qrcode.Rasterizer;
+
+class QRDecoderTest {
+
+	private static final String[] PAYLOADS = { "", "0123456789", "HELLO WORLD", "hello world",
+			"https://example.com/p/0012345678?ref=QR", "\u00e9t\u00e9 \u00e0 Z\u00fcrich 2020" };
+
+	@Test
+	void testRoundTrip() {
+		for (CorrectionLvl level : CorrectionLvl.values()) {
+			for (int version : new int[] { 5, 7, 12, 40 }) {
+				EncoderContext context = new EncoderContext(version, level);
+				for (String payload : PAYLOADS) {
+					QRMatrix matrix = context.encode(payload);
+					DecodedSymbol symbol = QRDecoder.decode(matrix);
+					assertEquals(payload, symbol.getText(), "version " + version + " level " + level);
+					assertEquals(version, symbol.getVersion());
+					assertEquals(level, symbol.getLevel());
+					assertEquals(context.getMask(), symbol.getMask());
+				}
+			}
+		}
+	}
+
+	@Test
+	void testReadImages() {
+		QRMatrix matrix = new EncoderContext(5, CorrectionLvl.Q).encode("SCALE AND BORDER");
+		for (int scale : new int[] { 1, 3, 10 }) {
+			for (int border : new int[] { 0, 4 }) {
+				for (int type : new int[] { BufferedImage.TYPE_BYTE_BINARY, BufferedImage.TYPE_BYTE_GRAY }) {
+					BufferedImage image = Rasterizer.rasterize(matrix, scale, border, type);
+					assertEquals(matrix, withFunctionsOf(MatrixReader.read(image), matrix));
+					assertEquals("SCALE AND BORDER", QRDecoder.decode(image).getText());
+					if (border > 0) {
+						// the raster of a sub-image is translated in its data buffer
+						BufferedImage cropped = image.getSubimage(scale, scale, image.getWidth() - 2 * scale,
+								image.getHeight() - 2 * scale);
+						assertEquals("SCALE AND BORDER", QRDecoder.decode(cropped).getText());
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	void testReadArray() {
+		// the byte mode encoding of the legacy pipeline, at module scale
+		int[][] pixels = MatrixConstruction.renderQRCodeMatrix(3, DataEncoding.byteModeEncoding("legacy", 3));
+		assertEquals("legacy", QRDecoder.decode(MatrixReader.read(pixels)).getText());
+		assertEquals(CorrectionLvl.L, QRDecoder.decode(MatrixReader.read(pixels)).getLevel());
+		assertEquals(21, MatrixReader.read(Helpers.readMatrix("testV1M0")).getSize());
+	}
+
+	@Test
+	void testFormatErrors() {
+		EncoderContext context = new EncoderContext(2, CorrectionLvl.M);
+		QRMatrix matrix = context.encode("FORMAT").copy();
+		// three wrong bits in the first copy, the second one is intact
+		matrix.setDark(8, matrix.getSize() - 1, !matrix.isDark(8, matrix.getSize() - 1));
+		matrix.setDark(8, 0, !matrix.isDark(8, 0));
+		matrix.setDark(8, 3, !matrix.isDark(8, 3));
+		DecodedSymbol symbol = QRDecoder.decode(matrix);
+		assertEquals("FORMAT", symbol.getText());
+		assertEquals(context.getMask(), symbol.getMask());
+	}
+
+	@Test
+	void testDamagedSymbol() {
+		EncoderContext context = new EncoderContext(7, CorrectionLvl.H);
+		QRMatrix matrix = context.encode("https://example.com/damaged").copy();
+		assertEquals(0, QRDecoder.decode(matrix).getErrorsCorrected());
+		// a light square over the center of the symbol
+		for (int y = 18; y < 26; y++) {
+			for (int x = 18; x < 26; x++) {
+				matrix.setDark(x, y, false);
+			}
+		}
+		DecodedSymbol symbol = QRDecoder.decode(matrix);
+		assertEquals("https://example.com/damaged", symbol.getText());
+		assertTrue(symbol.getErrorsCorrected() > 0);
+
+		// beyond the capacity of the error correction
+		for (int y = 4; y < matrix.getSize() - 4; y++) {
+			for (int x = 9; x < matrix.getSize() - 9; x++) {
+				matrix.setDark(x, y, (x * y) % 3 == 0);
+			}
+		}
+		assertThrows(IllegalArgumentException.class, () -> QRDecoder.decode(matrix));
+	}
+
+	@Test
+	void testInvalidInputs() {
+		assertThrows(IllegalArgumentException.class,
+				() -> MatrixReader.read(new BufferedImage(50, 50, BufferedImage.TYPE_BYTE_BINARY)));
+		assertThrows(IllegalArgumentException.class, () -> QRDecoder.decode(new QRMatrix(22)));
+		// no format word is close to an empty matrix
+		assertThrows(IllegalArgumentException.class, () -> QRDecoder.decode(new QRMatrix(21)));
+	}
+
+	/**
+	 * @return the modules of the read matrix with the function flags of the
+	 *         encoded one, so that the two can be compared
+	 */
+	private static QRMatrix withFunctionsOf(QRMatrix read, QRMatrix encoded) {
+		QRMatrix result = encoded.copy();
+		for (int y = 0; y < read.getSize(); y++) {
+			for (int x = 0; x < read.getSize(); x++) {
+				result.setDark(x, y, read.isDark(x, y));
+			}
+		}
+		return result;
+	}
+}
@@ -0,0 +1,94 @@
+package reedsolomon;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class ErrorCorrectionDecodingTest {
+
+	private final int[] message = { 65, 21, 7, 38, 246, 119, 38, 22, 214, 214, 150, 230, 114, 6, 151, 50, 6, 18, 0 };
+	private final int[] ecc = { 143, 165, 236, 181, 112, 47, 93 };
+
+	private int[] block() {
+		int[] block = new int[message.length + ecc.length];
+		System.arraycopy(message, 0, block, 0, message.length);
+		System.arraycopy(ecc, 0, block, message.length, ecc.length);
+		return block;
+	}
+
+	@Test
+	void testCleanBlock() {
+		int[] block = block();
+		assertEquals(0, ErrorCorrectionDecoding.decode(block, ecc.length));
+		assertArrayEquals(block(), block);
+	}
+
+	@Test
+	void testCorrectErrors() {
+		int[] block = block();
+		block[0] ^= 0xFF;
+		block[10] = 0;
+		block[block.length - 1] ^= 1;
+		assertEquals(3, ErrorCorrectionDecoding.decode(block, ecc.length));
+		assertArrayEquals(block(), block);
+	}
+
+	@Test
+	void testTooManyErrors() {
+		int[] block = block();
+		for (int i = 0; i < 4; i++) {
+			block[i * 5] ^= 0x5A;
+		}
+		// 7 error correction codewords correct at most 3 errors
+		assertEquals(ErrorCorrectionDecoding.UNCORRECTABLE, ErrorCorrectionDecoding.decode(block, ecc.length));
+
+		// with this seed, every block with 4 to 7 errors is detected rather than
+		// miscorrected
+		Random random = new Random(7);
+		for (int trial = 0; trial < 200; trial++) {
+			int[] damaged = block();
+			int errors = 4 + random.nextInt(4);
+			for (int e = 0; e < errors; e++) {
+				int position;
+				do {
+					position = random.nextInt(damaged.length);
+				} while (damaged[position] != block()[position]);
+				damaged[position] ^= 1 + random.nextInt(255);
+			}
+			assertEquals(ErrorCorrectionDecoding.UNCORRECTABLE, ErrorCorrectionDecoding.decode(damaged, ecc.length),
+					"trial " + trial);
+		}
+	}
+
+	@Test
+	void testRandomBlocks() {
+		Random random = new Random(42);
+		for (int trial = 0; trial < 500; trial++) {
+			int eccLength = 2 + random.nextInt(29);
+			int length = eccLength + 1 + random.nextInt(255 - eccLength);
+			int[] block = new int[length];
+			for (int i = 0; i < length - eccLength; i++) {
+				block[i] = random.nextInt(256);
+			}
+			ErrorCorrectionEncoding.encode(block, 0, length - eccLength, eccLength, block, length - eccLength);
+			int[] expected = block.clone();
+			int errors = random.nextInt(eccLength / 2 + 1);
+			for (int e = 0; e < errors; e++) {
+				int position;
+				do {
+					position = random.nextInt(length);
+				} while (block[position] != expected[position]);
+				block[position] ^= 1 + random.nextInt(255);
+			}
+			// an offset in a larger array
+			int[] buffer = new int[length + 3];
+			System.arraycopy(block, 0, buffer, 2, length);
+			assertEquals(errors, ErrorCorrectionDecoding.decode(buffer, 2, length, eccLength), "trial " + trial);
+			for (int i = 0; i < length; i++) {
+				assertEquals(expected[i], buffer[i + 2], "trial " + trial);
+			}
+		}
+	}
+}
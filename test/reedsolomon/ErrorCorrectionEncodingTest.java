@@ -0,0 +1,42 @@
+package reedsolomon;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class ErrorCorrectionEncodingTest {
+
+	private final int[] message = { 65, 21, 7, 38, 246, 119, 38, 22, 214, 214, 150, 230, 114, 6, 151, 50, 6, 18, 0 };
+	private final int[] ecc = { 143, 165, 236, 181, 112, 47, 93 };
+
+	@Test
+	void testEncode() {
+		assertArrayEquals(ecc, ErrorCorrectionEncoding.encode(message, 7));
+	}
+
+	@Test
+	void testEncodeIntoBuffer() {
+		int[] buffer = new int[message.length + 10];
+		System.arraycopy(message, 0, buffer, 1, message.length);
+		buffer[buffer.length - 1] = 42;
+		ErrorCorrectionEncoding.encode(buffer, 1, message.length, 7, buffer, message.length + 2);
+		for (int i = 0; i < 7; i++) {
+			assertEquals(ecc[i], buffer[message.length + 2 + i]);
+		}
+		assertEquals(42, buffer[buffer.length - 1]);
+	}
+
+	@Test
+	void testEncodeBytes() {
+		byte[] bytes = new byte[message.length];
+		for (int i = 0; i < message.length; i++) {
+			bytes[i] = (byte) message[i];
+		}
+		byte[] output = new byte[7];
+		ErrorCorrectionEncoding.encode(bytes, 0, bytes.length, 7, output, 0);
+		for (int i = 0; i < 7; i++) {
+			assertEquals(ecc[i], output[i] & 0xFF);
+		}
+	}
+
+}